@@ -0,0 +1,143 @@
+package bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.enderturret.umldiagram.UMLDiagram;
+import net.enderturret.umldiagram.UMLDiagrams;
+import net.enderturret.umldiagram.util.Settings;
+
+/**
+ * Measures the throughput of {@link UMLDiagrams#generateUncached(Settings, Class)} and {@link UMLDiagrams#generate(Settings, byte[], byte[][])} over a fixed set of JDK classes.
+ * Each operation generates (and optionally renders) a diagram for every class in the corpus.
+ * Reflection bypasses the cache in {@link UMLDiagrams#generate(Settings, Class)}, since otherwise every operation after the first would just be a lookup.
+ * @author EnderTurret
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerateBenchmark {
+
+	/**
+	 * The classes to generate diagrams for. These are picked to cover big classes, generic-heavy classes, enums and deep hierarchies.
+	 */
+	static final Class<?>[] CORPUS = {
+			Object.class,
+			String.class,
+			StringBuilder.class,
+			Character.class,
+			Integer.class,
+			Thread.class,
+			Thread.State.class,
+			Enum.class,
+			java.util.ArrayList.class,
+			java.util.HashMap.class,
+			java.util.TreeMap.class,
+			java.util.concurrent.ConcurrentHashMap.class,
+			java.util.stream.Collectors.class,
+			java.util.stream.Stream.class,
+			java.util.Optional.class,
+			java.util.concurrent.TimeUnit.class,
+	};
+
+	@Param({ "default", "sort", "noGenerics", "allVisible", "withSuper" })
+	public String settingsName;
+
+	private Settings settings;
+
+	private byte[][] code;
+	private byte[][][] superCode;
+
+	@Setup
+	public void setup() {
+		settings = settings(settingsName);
+
+		code = new byte[CORPUS.length][];
+		superCode = new byte[CORPUS.length][][];
+
+		for (int i = 0; i < CORPUS.length; i++) {
+			code[i] = readClassBytecode(CORPUS[i]);
+
+			final List<byte[]> supers = new ArrayList<>();
+			for (Class<?> sup = CORPUS[i].getSuperclass(); sup != null; sup = sup.getSuperclass())
+				supers.add(0, readClassBytecode(sup));
+
+			superCode[i] = supers.toArray(new byte[0][]);
+		}
+	}
+
+	static Settings settings(String name) {
+		switch (name) {
+			case "default": return new Settings();
+			case "sort": return new Settings().sort(true);
+			case "noGenerics": return new Settings().showGenerics(false);
+			case "allVisible": return new Settings().setAllVisible();
+			case "withSuper": return new Settings().withSuper(true).includeObject(true);
+			default: throw new IllegalArgumentException("Unknown settings: " + name);
+		}
+	}
+
+	@Benchmark
+	public void bytecode(Blackhole bh) {
+		for (int i = 0; i < code.length; i++)
+			bh.consume(UMLDiagrams.generate(settings, code[i], superCode[i]));
+	}
+
+	@Benchmark
+	public void reflection(Blackhole bh) {
+		for (Class<?> clazz : CORPUS)
+			bh.consume(UMLDiagrams.generateUncached(settings, clazz));
+	}
+
+	@Benchmark
+	public void bytecodeRendered(Blackhole bh) {
+		for (int i = 0; i < code.length; i++) {
+			final UMLDiagram diagram = UMLDiagrams.generate(settings, code[i], superCode[i]);
+			bh.consume(diagram.toString());
+		}
+	}
+
+	@Benchmark
+	public void reflectionRendered(Blackhole bh) {
+		for (Class<?> clazz : CORPUS) {
+			final UMLDiagram diagram = UMLDiagrams.generateUncached(settings, clazz);
+			bh.consume(diagram.toString());
+		}
+	}
+
+	static byte[] readClassBytecode(Class<?> clazz) {
+		try (InputStream is = clazz.getResourceAsStream("/" + clazz.getName().replace('.', '/') + ".class");
+				ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+			final byte[] buffer = new byte[2048];
+			int read;
+
+			while ((read = is.read(buffer)) != -1)
+				baos.write(buffer, 0, read);
+
+			return baos.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.enderturret.umldiagram.UMLDiagram;
+import net.enderturret.umldiagram.UMLDiagrams;
+import net.enderturret.umldiagram.util.Settings;
+
+/**
+ * Measures rendering already generated diagrams, for the classes with the biggest diagrams we render regularly.
+ * @author EnderTurret
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+	@Param({ "java.lang.String", "java.lang.StringBuilder", "java.lang.Character" })
+	public String className;
+
+	private UMLDiagram diagram;
+	private StringBuilder sb;
+
+	@Setup
+	public void setup() throws ClassNotFoundException {
+		diagram = UMLDiagrams.generate(new Settings().setAllVisible(), Class.forName(className));
+		sb = new StringBuilder(diagram.toString().length());
+	}
+
+	@Benchmark
+	public String toStringRender() {
+		return diagram.toString();
+	}
+
+	@Benchmark
+	public StringBuilder renderTo() throws IOException {
+		sb.setLength(0);
+		diagram.renderTo(sb, 0, diagram.minWidth());
+		return sb;
+	}
+}
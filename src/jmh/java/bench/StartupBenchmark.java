@@ -0,0 +1,78 @@
+package bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time from launching the shadow jar to having the diagram of {@code --no-gui java.lang.String}, with and without the AppCDS archive.
+ * The paths come from the {@code jmh} Gradle task; the archive has to be created with {@code ./gradlew cdsArchive} first.
+ * @author EnderTurret
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean cds;
+
+	private List<String> command;
+
+	@Setup
+	public void setup() {
+		final String jar = System.getProperty("umldiagram.jar");
+		if (jar == null || !Files.exists(Paths.get(jar)))
+			throw new IllegalStateException("The shadow jar could not be found; run this with ./gradlew jmh.");
+
+		command = new ArrayList<>();
+		command.add(System.getProperty("umldiagram.java", Paths.get(System.getProperty("java.home"), "bin", "java").toString()));
+
+		if (cds) {
+			final String archive = System.getProperty("umldiagram.cds");
+			if (archive == null || !Files.exists(Paths.get(archive)))
+				throw new IllegalStateException("The AppCDS archive could not be found; run ./gradlew cdsArchive first.");
+			command.add("-XX:SharedArchiveFile=" + archive);
+		}
+
+		Collections.addAll(command, "-jar", jar, "--no-gui", "java.lang.String");
+	}
+
+	@Benchmark
+	public int firstDiagram() throws IOException, InterruptedException {
+		final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+		// The diagram is the only thing printed, so it's done once the output ends.
+		final byte[] buffer = new byte[8192];
+		int read = 0;
+		try (InputStream is = process.getInputStream()) {
+			for (int n; (n = is.read(buffer)) != -1; )
+				read += n;
+		}
+
+		if (process.waitFor() != 0 || read == 0)
+			throw new IllegalStateException("The application failed to generate the diagram.");
+
+		return read;
+	}
+}
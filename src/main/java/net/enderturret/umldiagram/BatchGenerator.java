@@ -0,0 +1,93 @@
+package net.enderturret.umldiagram;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+import net.enderturret.umldiagram.util.Settings;
+
+/**
+ * <p>Generates UML diagrams for many classes in parallel, while still handing out the results in the order the classes were submitted.</p>
+ * <p>
+ * At most {@code window} diagrams are in flight (or finished but waiting for an earlier one) at any time.
+ * When the window is full, {@link #submit(IClass)} waits for the oldest diagram and passes it to the consumer before accepting the new class.
+ * This keeps memory use bounded no matter how many classes are submitted.
+ * </p>
+ * <p>The consumer is always called on the thread that calls {@link #submit(IClass)} or {@link #finish()}, so it doesn't need to be thread-safe.</p>
+ * @author EnderTurret
+ * @see UMLDiagrams#generateAll(java.util.Collection, Settings, Executor)
+ */
+public final class BatchGenerator implements AutoCloseable {
+
+	private final Settings settings;
+	private final Executor executor;
+	private final int window;
+	private final BiConsumer<? super UMLDiagram, ? super Throwable> consumer;
+
+	private final ArrayDeque<CompletableFuture<UMLDiagram>> pending;
+
+	/**
+	 * @param settings The settings to generate every diagram with.
+	 * @param executor The executor to generate diagrams on.
+	 * @param window The maximum number of diagrams that may be in flight at once.
+	 * @param consumer Receives each diagram in submission order. Exactly one of the diagram and the exception will be non-{@code null}.
+	 */
+	public BatchGenerator(Settings settings, Executor executor, int window, BiConsumer<? super UMLDiagram, ? super Throwable> consumer) {
+		if (window < 1) throw new IllegalArgumentException("Window must be at least 1, got " + window);
+		this.settings = settings;
+		this.executor = executor;
+		this.window = window;
+		this.consumer = consumer;
+		pending = new ArrayDeque<>(window);
+	}
+
+	/**
+	 * @return A reasonable window size for the number of processors on this machine.
+	 */
+	public static int defaultWindow() {
+		return Runtime.getRuntime().availableProcessors() * 4;
+	}
+
+	/**
+	 * Schedules a diagram to be generated for the given class.
+	 * Blocks if the window is full.
+	 * @param clazz The class.
+	 */
+	public void submit(IClass clazz) {
+		while (pending.size() >= window)
+			emit(pending.poll());
+
+		pending.add(CompletableFuture.supplyAsync(() -> clazz.toUML(settings), executor));
+	}
+
+	/**
+	 * Waits for all remaining diagrams and passes them to the consumer.
+	 */
+	public void finish() {
+		while (!pending.isEmpty())
+			emit(pending.poll());
+	}
+
+	/**
+	 * Same as {@link #finish()}.
+	 */
+	@Override
+	public void close() {
+		finish();
+	}
+
+	private void emit(CompletableFuture<UMLDiagram> future) {
+		final UMLDiagram diagram;
+
+		try {
+			diagram = future.join();
+		} catch (CompletionException e) {
+			consumer.accept(null, e.getCause() != null ? e.getCause() : e);
+			return;
+		}
+
+		consumer.accept(diagram, null);
+	}
+}
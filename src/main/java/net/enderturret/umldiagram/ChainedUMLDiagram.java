@@ -1,5 +1,6 @@
 package net.enderturret.umldiagram;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -34,21 +35,23 @@ public class ChainedUMLDiagram extends UMLDiagram {
 	}
 
 	@Override
-	public String toString(int leftPadding, int width) {
+	public void renderTo(Appendable out, int leftPadding, int width) throws IOException {
 		width = Math.max(width, minWidth());
-		final int arrowPos = width / 2;
+		final int arrowPos = leftPadding + width / 2;
 
-		final StringBuilder sb = new StringBuilder();
+		boolean first = true;
 
 		for (UMLDiagram uml : chained) {
-			if (sb.length() != 0)
-				sb.append("\n").append(Util.repeat(" ", arrowPos)).append("⇧").append("\n");
+			if (!first) {
+				out.append('\n');
+				Util.repeat(out, ' ', arrowPos);
+				out.append("⇧\n");
+			}
+			first = false;
 
-			final int leftPad = (width - uml.minWidth()) / 2;
+			final int leftPad = leftPadding + (width - uml.minWidth()) / 2;
 
-			sb.append(uml.toString(leftPad, uml.minWidth()));
+			uml.renderTo(out, leftPad, uml.minWidth());
 		}
-
-		return sb.toString();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,314 @@
+package net.enderturret.umldiagram;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import net.enderturret.umldiagram.source.Relation;
+import net.enderturret.umldiagram.util.Settings;
+import net.enderturret.umldiagram.util.Util;
+
+/**
+ * <p>Represents the relationships between a set of classes, such as everything in a package or jar.</p>
+ * <p>
+ * Each class is a node numbered from zero in the order it was {@link Builder#add(IClass) added}, and the edges going out of every node are stored together in flat arrays.
+ * Only relationships between classes in the graph are kept; superclasses, interfaces and field types from elsewhere are left out.
+ * Building and rendering the graph both take time proportional to the number of classes and relationships, so even very large jars are practical.
+ * </p>
+ * @author EnderTurret
+ * @see Builder
+ */
+public final class ClassGraph {
+
+	private static final Relation[] RELATIONS = Relation.values();
+
+	private final String[] names;
+	// The edges of node i are edgeStart[i] (inclusive) to edgeStart[i + 1] (exclusive).
+	private final int[] edgeStart;
+	private final int[] targets;
+	private final byte[] relations;
+
+	private ClassGraph(String[] names, int[] edgeStart, int[] targets, byte[] relations) {
+		this.names = names;
+		this.edgeStart = edgeStart;
+		this.targets = targets;
+		this.relations = relations;
+	}
+
+	/**
+	 * @return The number of classes in the graph.
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @return The number of relationships in the graph.
+	 */
+	public int edgeCount() {
+		return targets.length;
+	}
+
+	/**
+	 * @param node A node.
+	 * @return The binary name of the node's class, like {@code java.util.Map$Entry}.
+	 */
+	public String name(int node) {
+		return names[node];
+	}
+
+	/**
+	 * @param node A node.
+	 * @return The number of relationships going out of the node.
+	 */
+	public int outDegree(int node) {
+		return edgeStart[node + 1] - edgeStart[node];
+	}
+
+	/**
+	 * @param node A node.
+	 * @param edge The index of one of the node's relationships, less than {@link #outDegree(int)}.
+	 * @return The node on the other end of the relationship.
+	 */
+	public int target(int node, int edge) {
+		return targets[edgeStart[node] + edge];
+	}
+
+	/**
+	 * @param node A node.
+	 * @param edge The index of one of the node's relationships, less than {@link #outDegree(int)}.
+	 * @return The kind of relationship.
+	 */
+	public Relation relation(int node, int edge) {
+		return RELATIONS[relations[edgeStart[node] + edge]];
+	}
+
+	/**
+	 * <p>Renders the graph as text, listing each class followed by its relationships:</p>
+	 * <pre>
+	 * com.example.Dog
+	 *     extends    com.example.Animal
+	 *     implements com.example.Pet
+	 *     has        com.example.Owner
+	 * </pre>
+	 * @param out Where to write the graph to.
+	 * @throws IOException If {@code out} throws one.
+	 */
+	public void renderText(Appendable out) throws IOException {
+		int width = 0;
+		for (Relation relation : RELATIONS)
+			width = Math.max(width, relation.keyword().length());
+
+		for (int node = 0; node < names.length; node++) {
+			out.append(names[node]).append('\n');
+
+			for (int i = edgeStart[node]; i < edgeStart[node + 1]; i++) {
+				final String keyword = RELATIONS[relations[i]].keyword();
+				Util.repeat(out, ' ', 4);
+				out.append(keyword);
+				Util.repeat(out, ' ', width - keyword.length() + 1);
+				out.append(names[targets[i]]).append('\n');
+			}
+		}
+	}
+
+	/**
+	 * Renders the graph in Graphviz's DOT language, with UML-style arrows.
+	 * @param out Where to write the graph to.
+	 * @throws IOException If {@code out} throws one.
+	 */
+	public void renderDot(Appendable out) throws IOException {
+		out.append("digraph classes {\n\tnode [shape=box];\n");
+
+		for (int node = 0; node < names.length; node++) {
+			out.append("\tn").append(Integer.toString(node)).append(" [label=");
+			Util.appendJsonString(out, names[node]);
+			out.append("];\n");
+		}
+
+		for (int node = 0; node < names.length; node++)
+			for (int i = edgeStart[node]; i < edgeStart[node + 1]; i++) {
+				out.append("\tn").append(Integer.toString(node)).append(" -> n").append(Integer.toString(targets[i]));
+
+				switch (RELATIONS[relations[i]]) {
+					case INHERITANCE: out.append(" [arrowhead=empty]"); break;
+					case IMPLEMENTATION: out.append(" [arrowhead=empty, style=dashed]"); break;
+					case ASSOCIATION: out.append(" [arrowhead=vee]"); break;
+				}
+
+				out.append(";\n");
+			}
+
+		out.append("}\n");
+	}
+
+	/**
+	 * <p>Renders the graph as JSON. Edges refer to classes by their index in the {@code classes} array:</p>
+	 * <pre>
+	 * {"classes":["com.example.Animal","com.example.Dog"],"edges":[{"from":1,"to":0,"relation":"inheritance"}]}
+	 * </pre>
+	 * @param out Where to write the graph to.
+	 * @throws IOException If {@code out} throws one.
+	 */
+	public void renderJson(Appendable out) throws IOException {
+		out.append("{\"classes\":[");
+
+		for (int node = 0; node < names.length; node++) {
+			if (node != 0) out.append(',');
+			Util.appendJsonString(out, names[node]);
+		}
+
+		out.append("],\"edges\":[");
+
+		boolean first = true;
+		for (int node = 0; node < names.length; node++)
+			for (int i = edgeStart[node]; i < edgeStart[node + 1]; i++) {
+				if (!first) out.append(',');
+				first = false;
+
+				out.append("{\"from\":").append(Integer.toString(node))
+						.append(",\"to\":").append(Integer.toString(targets[i]))
+						.append(",\"relation\":\"").append(RELATIONS[relations[i]].name().toLowerCase(Locale.ENGLISH)).append("\"}");
+			}
+
+		out.append("]}\n");
+	}
+
+	@Override
+	public String toString() {
+		return "ClassGraph[" + names.length + " classes, " + targets.length + " relationships]";
+	}
+
+	/**
+	 * <p>Builds a {@link ClassGraph} from classes one at a time.</p>
+	 * <p>
+	 * Relationships are recorded by name as classes are added, and only resolved to nodes in {@link #build()}, once every class is known.
+	 * This means classes can be added in any order. If two classes have the same name, the first one wins.
+	 * </p>
+	 * <p>This class is not thread-safe.</p>
+	 * @author EnderTurret
+	 */
+	public static final class Builder {
+
+		private final Settings settings;
+		private final String packageName;
+
+		private final Map<String, Integer> nodes = new HashMap<>();
+		private final List<String> names = new ArrayList<>();
+
+		// The relationships recorded so far, as parallel arrays.
+		private int[] sources = new int[64];
+		private String[] targetNames = new String[64];
+		private byte[] relations = new byte[64];
+		private int edges;
+
+		/**
+		 * @param settings The settings to find relationships with. Only the visibility and whether to show generics are used.
+		 * @param packageName Only classes directly in this package are added, or {@code null} to add every class.
+		 */
+		public Builder(Settings settings, String packageName) {
+			this.settings = settings;
+			this.packageName = packageName;
+		}
+
+		/**
+		 * Adds a class to the graph.
+		 * @param clazz The class.
+		 * @return {@code true} if the class was added, or {@code false} if it's in another package or a class with the same name was already added.
+		 */
+		public boolean add(IClass clazz) {
+			final int node = names.size();
+			final int mark = edges;
+
+			final String name = clazz.relations(settings, (relation, target) -> {
+				if (edges == sources.length) {
+					sources = Arrays.copyOf(sources, edges * 2);
+					targetNames = Arrays.copyOf(targetNames, edges * 2);
+					relations = Arrays.copyOf(relations, edges * 2);
+				}
+
+				sources[edges] = node;
+				targetNames[edges] = target;
+				relations[edges] = (byte) relation.ordinal();
+				edges++;
+			});
+
+			if ((packageName != null && !packageName.equals(packageOf(name))) || nodes.putIfAbsent(name, node) != null) {
+				Arrays.fill(targetNames, mark, edges, null);
+				edges = mark;
+				return false;
+			}
+
+			names.add(name);
+			return true;
+		}
+
+		private static String packageOf(String name) {
+			final int idx = name.lastIndexOf('.');
+			return idx == -1 ? "" : name.substring(0, idx);
+		}
+
+		/**
+		 * Resolves the relationships between the classes added so far.
+		 * Duplicate relationships, and relationships with classes that aren't in the graph, are dropped.
+		 * @return The graph.
+		 */
+		public ClassGraph build() {
+			final int size = names.size();
+			final int[] edgeStart = new int[size + 1];
+			final int[] resolved = new int[edges];
+
+			// Resolve every target, counting how many edges each node ends up with.
+			for (int i = 0; i < edges; i++) {
+				final Integer target = nodes.get(targetNames[i]);
+				resolved[i] = target == null ? -1 : target;
+				if (target != null)
+					edgeStart[sources[i] + 1]++;
+			}
+
+			for (int node = 0; node < size; node++)
+				edgeStart[node + 1] += edgeStart[node];
+
+			final int[] targets = new int[edgeStart[size]];
+			final byte[] kinds = new byte[edgeStart[size]];
+			final int[] end = Arrays.copyOf(edgeStart, size);
+
+			// Remembers the last node to have each (target, relation) pair, so duplicates are dropped in linear time.
+			final int[] seen = new int[size * RELATIONS.length];
+			Arrays.fill(seen, -1);
+
+			// Edges were recorded one node at a time, so they're already grouped by node.
+			for (int i = 0; i < edges; i++) {
+				if (resolved[i] == -1) continue;
+
+				final int source = sources[i];
+				final int key = resolved[i] * RELATIONS.length + relations[i];
+				if (seen[key] == source) continue;
+				seen[key] = source;
+
+				targets[end[source]] = resolved[i];
+				kinds[end[source]] = relations[i];
+				end[source]++;
+			}
+
+			// Compact away the slots left over by duplicates.
+			int out = 0;
+			for (int node = 0; node < size; node++) {
+				final int start = edgeStart[node];
+				edgeStart[node] = out;
+				for (int i = start; i < end[node]; i++) {
+					targets[out] = targets[i];
+					kinds[out] = kinds[i];
+					out++;
+				}
+			}
+			edgeStart[size] = out;
+
+			return new ClassGraph(names.toArray(new String[0]), edgeStart, Arrays.copyOf(targets, out), Arrays.copyOf(kinds, out));
+		}
+	}
+}
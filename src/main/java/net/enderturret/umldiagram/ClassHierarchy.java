@@ -0,0 +1,179 @@
+package net.enderturret.umldiagram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.objectweb.asm.ClassReader;
+
+import net.enderturret.umldiagram.input.ClassIndex;
+import net.enderturret.umldiagram.util.Settings;
+import net.enderturret.umldiagram.util.Util;
+
+/**
+ * <p>Finds the superclasses of classes generated from bytecode, so that {@link Settings#withSuper(boolean)} works without having to pass the superclasses in by hand.</p>
+ * <p>
+ * Superclasses are looked up in a {@link ClassIndex} of the given jars, jmods and directories, and then in the classes of the running JVM (which covers the JDK).
+ * The diagrams of superclasses are cached and shared between threads, so a class like {@code AbstractMap} is only turned into a diagram once per set of settings,
+ * no matter how many of its subclasses are generated.
+ * </p>
+ * <p>This class is thread-safe.</p>
+ * @author EnderTurret
+ * @see Settings#hierarchy(ClassHierarchy)
+ */
+public final class ClassHierarchy implements AutoCloseable {
+
+	private static final Parent MISSING = new Parent(null, null);
+
+	private final ClassIndex index;
+	private final ConcurrentHashMap<Key, Parent> parents = new ConcurrentHashMap<>();
+
+	/**
+	 * @param classPath The jars, jmods and directories to look for superclasses in.
+	 * @throws IOException If one of them could not be indexed.
+	 */
+	public ClassHierarchy(List<Path> classPath) throws IOException {
+		this(ClassIndex.build(classPath));
+	}
+
+	/**
+	 * @param index The index of the jars, jmods and directories to look for superclasses in, or {@code null} to only look in the JDK.
+	 */
+	public ClassHierarchy(ClassIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * Finds the bytecode of a class.
+	 * @param internalName The internal name of the class, such as {@code java/util/AbstractMap}.
+	 * @return The bytecode, or {@code null} if the class could not be found.
+	 * @throws IOException If the class was found but could not be read.
+	 */
+	public byte[] find(String internalName) throws IOException {
+		final byte[] code = index != null ? index.find(internalName.replace('/', '.')) : null;
+		if (code != null) return code;
+
+		try (InputStream is = ClassLoader.getSystemResourceAsStream(internalName + ".class")) {
+			return is == null ? null : Util.readAllBytes(is, 4096);
+		}
+	}
+
+	/**
+	 * Finds and generates the superclass diagrams of the given class.
+	 * The chain stops early at the first superclass that can't be found, or that was already in the chain.
+	 * @param code The bytecode of the class.
+	 * @param settings The settings to generate the superclasses with.
+	 * @param includeObject Whether to include {@link Object}.
+	 * @return The superclass diagrams, starting with the topmost one.
+	 */
+	UMLDiagram[] parents(byte[] code, Settings settings, boolean includeObject) {
+		// Parents are cached before they're chained, so which parents are chained doesn't matter.
+		final Settings.Fingerprint fingerprint = settings.diagramFingerprint();
+		final List<UMLDiagram> ret = new ArrayList<>();
+
+		final ClassReader reader = new ClassReader(code);
+		String name = reader.getSuperName();
+
+		// Malformed or obfuscated classes can claim to extend themselves (or a subclass), so stop at the first repeat.
+		final Set<String> seen = new HashSet<>();
+		seen.add(reader.getClassName());
+
+		while (name != null && (includeObject || !"java/lang/Object".equals(name)) && seen.add(name)) {
+			final Key key = new Key(name, fingerprint);
+			Parent parent = parents.get(key);
+
+			// Load outside of the map, so unrelated parents don't wait on each other's reads.
+			// Two threads may both load the same parent, but only the first one is kept.
+			if (parent == null) {
+				final Parent loaded = load(name, settings, fingerprint);
+				parent = parents.putIfAbsent(key, loaded);
+				if (parent == null) parent = loaded;
+			}
+
+			if (parent == MISSING) break;
+
+			ret.add(0, parent.diagram);
+			name = parent.superName;
+		}
+
+		return ret.toArray(new UMLDiagram[0]);
+	}
+
+	private Parent load(String name, Settings settings, Settings.Fingerprint fingerprint) {
+		final byte[] code;
+
+		try {
+			code = find(name);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to read superclass " + name, e);
+		}
+
+		if (code == null) return MISSING;
+
+		return new Parent(UMLDiagrams.bytecode(code, settings, settings.cache(), fingerprint), new ClassReader(code).getSuperName());
+	}
+
+	/**
+	 * Forgets every cached superclass diagram, for when classes on the class path may have changed.
+	 */
+	public void clear() {
+		parents.clear();
+	}
+
+	/**
+	 * @return The number of cached superclass diagrams.
+	 */
+	public int size() {
+		return parents.size();
+	}
+
+	/**
+	 * Closes the index.
+	 */
+	@Override
+	public void close() {
+		if (index != null)
+			index.close();
+	}
+
+	private static final class Key {
+
+		private final String name;
+		private final Settings.Fingerprint fingerprint;
+
+		Key(String name, Settings.Fingerprint fingerprint) {
+			this.name = name;
+			this.fingerprint = fingerprint;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof Key)) return false;
+			final Key o = (Key) obj;
+			return name.equals(o.name) && fingerprint.equals(o.fingerprint);
+		}
+
+		@Override
+		public int hashCode() {
+			return name.hashCode() * 31 + fingerprint.hashCode();
+		}
+	}
+
+	private static final class Parent {
+
+		private final UMLDiagram diagram;
+		private final String superName;
+
+		Parent(UMLDiagram diagram, String superName) {
+			this.diagram = diagram;
+			this.superName = superName;
+		}
+	}
+}
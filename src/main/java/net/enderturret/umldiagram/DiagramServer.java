@@ -0,0 +1,553 @@
+package net.enderturret.umldiagram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import net.enderturret.umldiagram.gui.HtmlDiagramFormatter;
+import net.enderturret.umldiagram.input.ClassIndex;
+import net.enderturret.umldiagram.input.DirectoryInput;
+import net.enderturret.umldiagram.input.IClassInput;
+import net.enderturret.umldiagram.input.JarInput;
+import net.enderturret.umldiagram.source.Access;
+import net.enderturret.umldiagram.source.data.ClassData;
+import net.enderturret.umldiagram.source.data.FieldData;
+import net.enderturret.umldiagram.source.data.MethodData;
+import net.enderturret.umldiagram.source.data.ParameterData;
+import net.enderturret.umldiagram.util.LruCache;
+import net.enderturret.umldiagram.util.Settings;
+import net.enderturret.umldiagram.util.Util;
+
+/**
+ * <p>Serves diagrams over HTTP, so that editors and build tools can ask for lots of diagrams without starting a new JVM every time.</p>
+ * <p>
+ * The server only listens on the loopback address. It understands the following requests:
+ * <ul>
+ * <li>{@code GET /diagram?class=java.util.HashMap}: a diagram of a class, looked up on the class path (see {@code --class-path}) and then in the JDK.</li>
+ * <li>{@code POST /diagram}: a diagram of the class file sent as the request body.</li>
+ * <li>{@code GET /jar?path=/path/to/file.jar}: diagrams of every class in a jar file or directory on the class path.</li>
+ * </ul>
+ * Every request takes a {@code format} of {@code text} (the default), {@code html} or {@code json},
+ * and can override the settings the server was started with using {@code show}, {@code sort}, {@code fqn}, {@code generics}, {@code super} and {@code object},
+ * which work like the command line options of the same names.
+ * </p>
+ * <p>
+ * Since any web page can send requests to {@code localhost}, requests whose {@code Host} or {@code Origin} isn't this machine are refused,
+ * and {@code /jar} only lists inputs on the class path, rather than anything the user can read.
+ * Its diagrams are streamed as they're generated, up to {@value #MAX_JAR_CLASSES} classes.
+ * </p>
+ * <p>
+ * Requests are handled on a fixed number of threads; when they're all busy and the queue is full, the thread accepting connections handles the request itself,
+ * which stops new connections from being accepted until things calm down.
+ * Diagrams of classes and uploaded class files are cached in memory (on top of the usual caches), so asking for the same diagram again is nearly free.
+ * </p>
+ * @author EnderTurret
+ */
+final class DiagramServer {
+
+	private static final int MAX_CLASS_SIZE = 16 * 1024 * 1024;
+	private static final int MAX_JAR_CLASSES = 1 << 16;
+
+	// What the Host header can be (without the port) for requests made to the loopback address.
+	private static final Set<String> LOCAL_HOSTS = new HashSet<>(Arrays.asList("localhost", "127.0.0.1", "[::1]"));
+
+	private final Settings settings;
+	private final ClassIndex index;
+	private final HttpServer server;
+	private final ThreadPoolExecutor workers;
+
+	// Finished responses, keyed by everything that went into them. Jars aren't cached, since they can change.
+	private final LruCache<String, Response> responses = new LruCache<>(1024, 16);
+
+	/**
+	 * @param port The port to listen on, or 0 to pick any free port.
+	 * @param settings The default settings for diagrams.
+	 * @param index Where to look up classes by name before trying the JDK, or {@code null}.
+	 * @throws IOException If the server could not be started.
+	 */
+	DiagramServer(int port, Settings settings, ClassIndex index) throws IOException {
+		this.settings = settings;
+		this.index = index;
+
+		workers = new ThreadPoolExecutor(settings.threads(), settings.threads(), 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(settings.threads() * 16), r -> {
+			final Thread t = new Thread(r, "UMLDiagram server");
+			t.setDaemon(true);
+			return t;
+		}, new ThreadPoolExecutor.CallerRunsPolicy());
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(workers);
+		server.createContext("/diagram", exchange -> handle(exchange, () -> diagram(exchange)));
+		server.createContext("/jar", exchange -> handle(exchange, () -> jar(exchange)));
+	}
+
+	/**
+	 * Starts accepting requests. The server keeps running (and keeps the JVM alive) until {@link #stop()} is called.
+	 */
+	void start() {
+		server.start();
+		System.out.println("Serving diagrams on http://localhost:" + port() + "/");
+	}
+
+	/**
+	 * @return The port the server is listening on.
+	 */
+	int port() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops the server, waiting for up to a second for requests to finish.
+	 */
+	void stop() {
+		server.stop(1);
+		workers.shutdown();
+	}
+
+	private Response diagram(HttpExchange exchange) {
+		final Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+		final Request request = new Request(query);
+
+		if ("GET".equals(exchange.getRequestMethod())) {
+			final String name = query.get("class");
+			if (name == null) throw new HttpError(400, "Expected a class name, like /diagram?class=java.lang.String.");
+
+			return responses.get("class:" + name + ":" + request, key -> render(find(name), request));
+		}
+
+		if ("POST".equals(exchange.getRequestMethod())) {
+			final byte[] code = readBody(exchange);
+			return responses.get("code:" + Util.hex(Util.sha256().digest(code)) + ":" + request, key -> render(new IClass.ASM(code), request));
+		}
+
+		throw new HttpError(405, "Expected GET or POST.");
+	}
+
+	private Response jar(HttpExchange exchange) {
+		if (!"GET".equals(exchange.getRequestMethod())) throw new HttpError(405, "Expected GET.");
+
+		final Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+		final Request request = new Request(query);
+
+		final String name = query.get("path");
+		if (name == null) throw new HttpError(400, "Expected a path, like /jar?path=/path/to/file.jar.");
+
+		final Path path;
+		try {
+			path = Paths.get(name).toAbsolutePath().normalize();
+		} catch (InvalidPathException e) {
+			throw new HttpError(400, "Malformed path: " + e.getMessage());
+		}
+
+		// Check this first, so that nothing is given away about files outside of the class path.
+		if (!onClassPath(path)) throw new HttpError(403, "Only jars and directories on the class path (see --class-path) can be listed.");
+		if (!Files.exists(path)) throw new HttpError(404, "The file \"" + path + "\" could not be found.");
+
+		final IClassInput input = Files.isDirectory(path) ? new DirectoryInput(path) : new JarInput(path);
+		final boolean json = "json".equals(request.format);
+		final boolean html = "html".equals(request.format);
+
+		// Write each diagram as soon as it's done, so that whole jars are never held in memory.
+		return new Response(request.contentType(), os -> {
+			final Writer out = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+			final StringBuilder sb = new StringBuilder(4096);
+			final int[] count = { 0 };
+
+			out.write(json ? "[" : html ? "<pre>" : "");
+
+			try {
+				input.forEach(clazz -> {
+					if (count[0] == MAX_JAR_CLASSES) return false;
+
+					sb.setLength(0);
+					try {
+						append(sb, clazz, request);
+					} catch (RuntimeException e) {
+						System.err.println("Failed to generate UML diagram:");
+						e.printStackTrace();
+						return true;
+					}
+
+					try {
+						if (count[0]++ != 0)
+							out.write(json ? ",\n" : "\n\n");
+						out.append(sb).flush();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+
+					return true;
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+
+			out.write(json ? "]\n" : html ? "</pre>\n" : "\n");
+			out.flush();
+		});
+	}
+
+	/**
+	 * @return {@code true} if the path is one of the inputs on the class path, or inside one of the directories on it.
+	 */
+	private boolean onClassPath(Path path) {
+		if (index == null) return false;
+
+		for (Path root : index.roots()) {
+			if (path.equals(root)) return true;
+
+			if (path.startsWith(root) && Files.isDirectory(root))
+				try {
+					// Don't follow symbolic links out of the directory.
+					return path.toRealPath().startsWith(root.toRealPath());
+				} catch (IOException e) {
+					return false; // Missing, unreadable or otherwise can't be checked, so refuse it.
+				}
+		}
+
+		return false;
+	}
+
+	private IClass find(String name) {
+		try {
+			final byte[] code = index != null ? index.find(name) : null;
+			if (code != null) return new IClass.ASM(code);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		try {
+			return new IClass.Reflected(Class.forName(name, false, Thread.currentThread().getContextClassLoader()));
+		} catch (ClassNotFoundException | NoClassDefFoundError e) {
+			throw new HttpError(404, "The class \"" + name + "\" could not be found.");
+		}
+	}
+
+	private static Response render(IClass clazz, Request request) {
+		final StringBuilder sb = new StringBuilder();
+
+		if ("html".equals(request.format))
+			sb.append("<pre>");
+
+		append(sb, clazz, request);
+
+		if ("html".equals(request.format))
+			sb.append("</pre>");
+
+		return new Response(request.contentType(), sb.append('\n').toString());
+	}
+
+	private static void append(StringBuilder sb, IClass clazz, Request request) {
+		if ("html".equals(request.format))
+			sb.append(clazz.toUML(request.html).toString());
+		else if ("json".equals(request.format))
+			appendJson(sb, clazz.extract(request.settings), request.settings);
+		else
+			sb.append(clazz.toUML(request.settings).toString());
+	}
+
+	/**
+	 * Writes the data of a class as JSON, along with the plain text diagram.
+	 */
+	private static void appendJson(StringBuilder sb, ClassData data, Settings settings) {
+		try {
+			sb.append("{\"name\":");
+			Util.appendJsonString(sb, data.name());
+
+			sb.append(",\"fields\":[");
+			boolean first = true;
+			for (FieldData field : sorted(data.fields(), settings)) {
+				if (!first) sb.append(',');
+				first = false;
+				sb.append("{\"access\":\"").append(field.access().character()).append("\",\"name\":");
+				Util.appendJsonString(sb, field.name());
+				sb.append(",\"type\":");
+				Util.appendJsonString(sb, field.type());
+				sb.append('}');
+			}
+
+			sb.append("],\"constructors\":");
+			appendJson(sb, sorted(data.constructors(), settings));
+			sb.append(",\"methods\":");
+			appendJson(sb, sorted(data.methods(), settings));
+
+			sb.append(",\"diagram\":");
+			Util.appendJsonString(sb, UMLDiagrams.render(settings, data).toString());
+			sb.append('}');
+		} catch (IOException e) { // StringBuilder doesn't throw these.
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void appendJson(StringBuilder sb, List<MethodData> methods) throws IOException {
+		sb.append('[');
+
+		boolean first = true;
+		for (MethodData method : methods) {
+			if (!first) sb.append(',');
+			first = false;
+
+			sb.append("{\"access\":\"").append(method.access().character()).append("\",\"name\":");
+			Util.appendJsonString(sb, method.name());
+			if (!method.constructor()) {
+				sb.append(",\"returnType\":");
+				Util.appendJsonString(sb, method.returnType());
+			}
+
+			sb.append(",\"parameters\":[");
+			for (int i = 0; i < method.params().length; i++) {
+				final ParameterData param = method.params()[i];
+				if (i != 0) sb.append(',');
+				sb.append('{');
+				if (param.name() != null) {
+					sb.append("\"name\":");
+					Util.appendJsonString(sb, param.name());
+					sb.append(',');
+				}
+				sb.append("\"type\":");
+				Util.appendJsonString(sb, param.type());
+				sb.append('}');
+			}
+			sb.append("]}");
+		}
+
+		sb.append(']');
+	}
+
+	private static <T extends Comparable<? super T>> List<T> sorted(List<T> list, Settings settings) {
+		if (!settings.sort()) return list;
+		final List<T> ret = new ArrayList<>(list);
+		Collections.sort(ret);
+		return ret;
+	}
+
+	/*
+	 * Plumbing
+	 */
+
+	private static void handle(HttpExchange exchange, Supplier<Response> handler) throws IOException {
+		try {
+			Response response;
+			int status = 200;
+
+			try {
+				// Stop web pages from reaching the server through DNS rebinding or cross-origin requests.
+				final String origin = exchange.getRequestHeaders().getFirst("Origin");
+				if (!isLocal(exchange.getRequestHeaders().getFirst("Host")) || origin != null && !isLocalOrigin(origin))
+					throw new HttpError(403, "Only requests from this machine are allowed.");
+
+				response = handler.get();
+			} catch (HttpError e) {
+				status = e.status;
+				response = new Response("text/plain; charset=utf-8", e.getMessage() + "\n");
+			} catch (RuntimeException | LinkageError e) {
+				status = 500;
+				response = new Response("text/plain; charset=utf-8", "The UML diagram couldn't be generated.\n\n" + Util.getStackTrace(e));
+			}
+
+			exchange.getResponseHeaders().set("Content-Type", response.contentType);
+			// A length of 0 means the body is sent in chunks as it's written.
+			exchange.sendResponseHeaders(status, response.body != null ? response.body.length : 0);
+
+			try (OutputStream os = exchange.getResponseBody()) {
+				if (response.body != null)
+					os.write(response.body);
+				else
+					response.stream.write(os);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * @param host The value of a {@code Host} header, or {@code null}.
+	 * @return {@code true} if it names the loopback address, with or without a port.
+	 */
+	private static boolean isLocal(String host) {
+		if (host == null) return false;
+
+		final int end = host.startsWith("[") ? host.indexOf(']') + 1 : host.indexOf(':') == -1 ? host.length() : host.indexOf(':');
+		if (end == 0) return false;
+
+		final String port = host.substring(end);
+		return LOCAL_HOSTS.contains(host.substring(0, end).toLowerCase(Locale.ENGLISH)) && (port.isEmpty() || port.matches(":[0-9]{1,5}"));
+	}
+
+	private static boolean isLocalOrigin(String origin) {
+		try {
+			final URI uri = new URI(origin);
+			return uri.getHost() != null && LOCAL_HOSTS.contains(uri.getHost().toLowerCase(Locale.ENGLISH));
+		} catch (URISyntaxException e) {
+			return false;
+		}
+	}
+
+	private static byte[] readBody(HttpExchange exchange) {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream(8192);
+		final byte[] buffer = new byte[8192];
+
+		try (InputStream is = exchange.getRequestBody()) {
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				if (baos.size() + read > MAX_CLASS_SIZE)
+					throw new HttpError(413, "Class files can be at most " + MAX_CLASS_SIZE + " bytes.");
+				baos.write(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		if (baos.size() == 0) throw new HttpError(400, "Expected the bytecode of a class as the request body.");
+
+		return baos.toByteArray();
+	}
+
+	private static Map<String, String> query(String raw) {
+		final Map<String, String> ret = new HashMap<>();
+		if (raw == null || raw.isEmpty()) return ret;
+
+		try {
+			for (String pair : raw.split("&")) {
+				final int idx = pair.indexOf('=');
+				if (idx == -1)
+					ret.put(URLDecoder.decode(pair, "UTF-8"), "true");
+				else
+					ret.put(URLDecoder.decode(pair.substring(0, idx), "UTF-8"), URLDecoder.decode(pair.substring(idx + 1), "UTF-8"));
+			}
+		} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+			throw new HttpError(400, "Malformed query string.");
+		}
+
+		return ret;
+	}
+
+	/**
+	 * The format and settings of a request, built from its query string on top of the server's settings.
+	 */
+	private final class Request {
+
+		private final String format;
+		private final Settings settings;
+		private final Settings html;
+
+		Request(Map<String, String> query) {
+			format = query.getOrDefault("format", "text").toLowerCase(Locale.ENGLISH);
+			if (!"text".equals(format) && !"html".equals(format) && !"json".equals(format))
+				throw new HttpError(400, "Expected a format of text, html or json, got " + query.get("format") + ".");
+
+			settings = DiagramServer.this.settings.copy();
+
+			final String show = query.get("show");
+			if ("all".equals(show))
+				settings.setAllVisible();
+			else if (show != null)
+				for (String access : show.split(",")) {
+					if ("package".equals(access))
+						access = "package_private";
+
+					try {
+						settings.addVisibility(Access.valueOf(access.toUpperCase(Locale.ENGLISH)));
+					} catch (IllegalArgumentException e) {
+						throw new HttpError(400, "show: unknown access " + access + ", expected one of: public, protected, package_private (or package), private, or all.");
+					}
+				}
+
+			if (query.containsKey("sort")) settings.sort(flag(query, "sort"));
+			if (query.containsKey("fqn")) settings.useFqn(flag(query, "fqn"));
+			if (query.containsKey("generics")) settings.showGenerics(flag(query, "generics"));
+			if (query.containsKey("super")) settings.withSuper(flag(query, "super"));
+			if (query.containsKey("object")) settings.includeObject(flag(query, "object"));
+
+			html = settings.copy().formatter(HtmlDiagramFormatter.INSTANCE);
+		}
+
+		private boolean flag(Map<String, String> query, String name) {
+			final String value = query.get(name);
+			if ("true".equals(value) || "1".equals(value)) return true;
+			if ("false".equals(value) || "0".equals(value)) return false;
+			throw new HttpError(400, name + ": expected true or false, got " + value + ".");
+		}
+
+		String contentType() {
+			switch (format) {
+				case "html": return "text/html; charset=utf-8";
+				case "json": return "application/json; charset=utf-8";
+				default: return "text/plain; charset=utf-8";
+			}
+		}
+
+		@Override
+		public String toString() {
+			return format + ":" + settings.fingerprint();
+		}
+	}
+
+	private static final class Response {
+
+		private final String contentType;
+		private final byte[] body;
+		private final Util.StreamWriter stream;
+
+		Response(String contentType, String body) {
+			this.contentType = contentType;
+			this.body = body.getBytes(StandardCharsets.UTF_8);
+			stream = null;
+		}
+
+		/**
+		 * A response that's written as it's generated. These can't be cached.
+		 */
+		Response(String contentType, Util.StreamWriter stream) {
+			this.contentType = contentType;
+			body = null;
+			this.stream = stream;
+		}
+	}
+
+	/**
+	 * Stops handling a request and responds with the given status and message.
+	 */
+	private static final class HttpError extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int status;
+
+		HttpError(int status, String message) {
+			super(message, null, false, false);
+			this.status = status;
+		}
+	}
+}
@@ -0,0 +1,362 @@
+package net.enderturret.umldiagram;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import net.enderturret.umldiagram.util.Util;
+
+/**
+ * <p>Writes diagrams to one file per class on a background thread, so that generating diagrams never waits for the disk.</p>
+ * <p>
+ * The diagram of {@code a.b.C} goes in {@code a/b/C.txt}, either in an output directory or in a zip file.
+ * Each file in a directory is written to a temporary file first and then moved into place, so readers see either the old diagram or the new one, never a partial one.
+ * A zip file is written to a temporary file as a whole, and only moved into place once every diagram is in it.
+ * </p>
+ * <p>
+ * At most a few hundred diagrams are queued at once; {@link #write(String, UMLDiagram)} waits for the writer to catch up when the queue is full.
+ * {@link #write(String, UMLDiagram)} should only be called from one thread.
+ * </p>
+ * @author EnderTurret
+ * @see DirectoryWatcher
+ */
+final class DiagramWriter implements AutoCloseable {
+
+	private static final Entry END = new Entry(null, null);
+
+	private final Output output;
+	private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(256);
+	private final Thread thread;
+	private boolean closed;
+
+	// Only touched by the writer thread until it has finished.
+	private int written;
+	private int failed;
+
+	private DiagramWriter(Output output) {
+		this.output = output;
+		thread = new Thread(this::run, "UMLDiagram writer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @param dir The directory to write diagrams to. It's created if it doesn't exist yet.
+	 * @return A writer that writes each diagram to its own file in the directory.
+	 * @throws IOException If the directory could not be created.
+	 */
+	static DiagramWriter directory(Path dir) throws IOException {
+		Files.createDirectories(dir);
+		return new DiagramWriter(new DirectoryOutput(dir));
+	}
+
+	/**
+	 * @param file The zip file to write diagrams to. It's replaced once the writer is closed.
+	 * @return A writer that writes each diagram to its own entry in the zip file.
+	 * @throws IOException If the temporary file could not be created.
+	 */
+	static DiagramWriter zip(Path file) throws IOException {
+		return new DiagramWriter(new ZipOutput(file));
+	}
+
+	/**
+	 * Queues a diagram to be written.
+	 * @param className The binary name of the class the diagram is for, such as {@code java.util.Map$Entry}.
+	 * @param diagram The diagram.
+	 */
+	void write(String className, UMLDiagram diagram) {
+		put(new Entry(className.replace('.', '/') + ".txt", diagram));
+	}
+
+	/**
+	 * Waits for every queued diagram to be written, and then finishes the output.
+	 * Does nothing if the writer has already been finished.
+	 * @throws IOException If the output could not be finished.
+	 */
+	void finish() throws IOException {
+		if (closed) return;
+		closed = true;
+
+		put(END);
+
+		boolean interrupted = false;
+		while (thread.isAlive())
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+
+		if (interrupted)
+			Thread.currentThread().interrupt();
+
+		output.finish(failed == 0 || written != 0);
+	}
+
+	/**
+	 * Same as {@link #finish()}.
+	 */
+	@Override
+	public void close() throws IOException {
+		finish();
+	}
+
+	/**
+	 * @return The number of diagrams written. Only accurate after {@link #finish()}.
+	 */
+	int written() {
+		return written;
+	}
+
+	/**
+	 * @return The number of diagrams that could not be written. Only accurate after {@link #finish()}.
+	 */
+	int failed() {
+		return failed;
+	}
+
+	private void put(Entry entry) {
+		try {
+			// Don't wait forever if the writer thread has died somehow.
+			while (!queue.offer(entry, 100, TimeUnit.MILLISECONDS))
+				if (!thread.isAlive())
+					throw new IllegalStateException("The writer thread has stopped");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while queueing a diagram", e);
+		}
+	}
+
+	private void run() {
+		final StringBuilder sb = new StringBuilder(4096);
+		final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+		final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+		for (Entry entry; (entry = take()) != END; ) {
+			sb.setLength(0);
+
+			try {
+				entry.diagram.renderTo(sb, 0, entry.diagram.minWidth());
+				sb.append(System.lineSeparator());
+
+				output.begin(entry.path);
+
+				try {
+					encode(sb, encoder, buffer);
+					output.end();
+				} catch (IOException | RuntimeException e) {
+					output.abort();
+					throw e;
+				}
+
+				written++;
+			} catch (IOException | RuntimeException e) {
+				failed++;
+				System.err.println("Failed to write UML diagram " + entry.path + ":");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private Entry take() {
+		while (true)
+			try {
+				return queue.take();
+			} catch (InterruptedException e) {
+				// Nothing else stops this thread, and finish() waits for it, so finish the queue anyway.
+			}
+	}
+
+	/**
+	 * Encodes the diagram into the buffer, passing it to the output every time it fills up.
+	 */
+	private void encode(CharSequence diagram, CharsetEncoder encoder, ByteBuffer buffer) throws IOException {
+		final CharBuffer chars = CharBuffer.wrap(diagram);
+		encoder.reset();
+
+		CoderResult result;
+		while ((result = encoder.encode(chars, buffer, true)).isOverflow())
+			flush(buffer);
+
+		if (result.isError())
+			result.throwException();
+
+		while (encoder.flush(buffer).isOverflow())
+			flush(buffer);
+
+		flush(buffer);
+	}
+
+	private void flush(ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		output.write(buffer);
+		buffer.clear();
+	}
+
+	private static final class Entry {
+
+		private final String path;
+		private final UMLDiagram diagram;
+
+		Entry(String path, UMLDiagram diagram) {
+			this.path = path;
+			this.diagram = diagram;
+		}
+	}
+
+	/**
+	 * Somewhere diagrams can be written to. Only used by the writer thread, except for {@link #finish(boolean)}.
+	 */
+	private interface Output {
+
+		/**
+		 * Starts a new file.
+		 * @param path The path of the file, relative to the output and separated with {@code /}.
+		 */
+		void begin(String path) throws IOException;
+
+		/**
+		 * Writes all of the given bytes to the current file.
+		 */
+		void write(ByteBuffer data) throws IOException;
+
+		/**
+		 * Finishes the current file.
+		 */
+		void end() throws IOException;
+
+		/**
+		 * Throws away the current file, after something went wrong writing it.
+		 */
+		void abort();
+
+		/**
+		 * Called once everything has been written.
+		 * @param keep Whether to keep what has been written.
+		 */
+		void finish(boolean keep) throws IOException;
+	}
+
+	private static final class DirectoryOutput implements Output {
+
+		private final Path dir;
+		// The directories that already exist, so they don't need to be checked for every file.
+		private final Set<Path> created = new HashSet<>();
+
+		private Path file;
+		private Path temp;
+		private FileChannel channel;
+
+		DirectoryOutput(Path dir) {
+			this.dir = dir;
+		}
+
+		@Override
+		public void begin(String path) throws IOException {
+			file = dir.resolve(path);
+
+			// Only remember directories once they exist, so that failing to create one is tried again for the next file.
+			final Path parent = file.getParent();
+			if (!created.contains(parent)) {
+				Files.createDirectories(parent);
+				created.add(parent);
+			}
+
+			temp = Util.tempFile(file);
+			channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		}
+
+		@Override
+		public void write(ByteBuffer data) throws IOException {
+			while (data.hasRemaining())
+				channel.write(data);
+		}
+
+		@Override
+		public void end() throws IOException {
+			channel.close();
+			Util.moveAtomically(temp, file);
+		}
+
+		@Override
+		public void abort() {
+			try {
+				channel.close();
+				Files.deleteIfExists(temp);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		@Override
+		public void finish(boolean keep) {}
+	}
+
+	private static final class ZipOutput implements Output {
+
+		private final Path file;
+		private final Path temp;
+		private final ZipOutputStream zip;
+
+		ZipOutput(Path file) throws IOException {
+			this.file = file.toAbsolutePath();
+
+			final Path parent = this.file.getParent();
+			Files.createDirectories(parent);
+			temp = Util.tempFile(this.file);
+			zip = new ZipOutputStream(new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)), 64 * 1024));
+		}
+
+		@Override
+		public void begin(String path) throws IOException {
+			zip.putNextEntry(new ZipEntry(path));
+		}
+
+		@Override
+		public void write(ByteBuffer data) throws IOException {
+			zip.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+			data.position(data.limit());
+		}
+
+		@Override
+		public void end() throws IOException {
+			zip.closeEntry();
+		}
+
+		@Override
+		public void abort() {
+			try {
+				zip.closeEntry();
+			} catch (IOException e) {
+				// The entry is already broken; the next one gets a fresh start either way.
+			}
+		}
+
+		@Override
+		public void finish(boolean keep) throws IOException {
+			try {
+				zip.close();
+				if (keep)
+					Util.moveAtomically(temp, file);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package net.enderturret.umldiagram;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import net.enderturret.umldiagram.util.Settings;
+import net.enderturret.umldiagram.util.Util;
+
+/**
+ * <p>Keeps a directory of diagrams up to date with a directory of class files.</p>
+ * <p>
+ * Every class file {@code a/b/C.class} gets a diagram in {@code a/b/C.txt} in the output directory.
+ * After an initial pass (which skips diagrams that are newer than their class file), only class files that change are generated again.
+ * Compilers tend to touch lots of files in quick succession, so changes are collected until nothing has changed for {@link #QUIET_MILLIS} and then handled as one batch.
+ * </p>
+ * @author EnderTurret
+ */
+final class DirectoryWatcher {
+
+	private static final long QUIET_MILLIS = 250;
+
+	private final Path classes;
+	private final Path out;
+	private final Settings settings;
+	private final Executor executor;
+
+	private final WatchService watcher;
+
+	DirectoryWatcher(Path classes, Path out, Settings settings, Executor executor) throws IOException {
+		this.classes = classes.toAbsolutePath();
+		this.out = out.toAbsolutePath();
+		this.settings = settings;
+		this.executor = executor;
+		watcher = FileSystems.getDefault().newWatchService();
+	}
+
+	/**
+	 * Generates any missing or outdated diagrams, and then watches for changes until interrupted.
+	 * @throws IOException If the class directory could not be watched.
+	 * @throws InterruptedException If the thread was interrupted while waiting for changes.
+	 */
+	void run() throws IOException, InterruptedException {
+		try {
+			update(scan(classes, true));
+			System.out.println("Watching " + classes + " for changes...");
+
+			while (true) {
+				final Set<Path> changed = new LinkedHashSet<>();
+				boolean overflow = collect(watcher.take(), changed);
+
+				// Wait for the burst of changes to die down.
+				WatchKey key;
+				while ((key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null)
+					overflow |= collect(key, changed);
+
+				// Events were lost, so just check everything.
+				if (overflow)
+					changed.addAll(scan(classes, true));
+
+				update(changed);
+			}
+		} finally {
+			watcher.close();
+		}
+	}
+
+	/**
+	 * Adds the files affected by the key's events to {@code changed}, and starts watching any new directories.
+	 * @return {@code true} if events were lost.
+	 */
+	private boolean collect(WatchKey key, Set<Path> changed) throws IOException {
+		final Path dir = (Path) key.watchable();
+		boolean overflow = false;
+
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				overflow = true;
+				continue;
+			}
+
+			final Path path = dir.resolve((Path) event.context());
+
+			if (event.kind() == ENTRY_CREATE && Files.isDirectory(path))
+				changed.addAll(scan(path, false)); // Files may have been added before we started watching it.
+			else if (path.getFileName().toString().endsWith(".class"))
+				changed.add(path);
+		}
+
+		key.reset();
+		return overflow;
+	}
+
+	/**
+	 * Watches the given directory and all of its subdirectories.
+	 * @param dir The directory.
+	 * @param skipUpToDate Whether to leave out class files whose diagram is newer than them.
+	 * @return The class files found.
+	 */
+	private Set<Path> scan(Path dir, boolean skipUpToDate) throws IOException {
+		final Set<Path> ret = new LinkedHashSet<>();
+
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (attrs.isRegularFile() && file.getFileName().toString().endsWith(".class")) {
+					final Path output = output(file);
+					if (!skipUpToDate || !Files.exists(output) || Files.getLastModifiedTime(output).compareTo(attrs.lastModifiedTime()) < 0)
+						ret.add(file);
+				}
+
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		return ret;
+	}
+
+	private Path output(Path clazz) {
+		final String name = clazz.getFileName().toString();
+		final Path relative = classes.relativize(clazz).resolveSibling(name.substring(0, name.length() - ".class".length()) + ".txt");
+		return out.resolve(relative.toString());
+	}
+
+	/**
+	 * Generates the diagrams of the given class files, and deletes the diagrams of ones that no longer exist.
+	 */
+	private void update(Set<Path> changed) {
+		if (changed.isEmpty()) return;
+
+		// Superclasses may have been changed too.
+		if (settings.hierarchy() != null)
+			settings.hierarchy().clear();
+
+		final ArrayDeque<Path> outputs = new ArrayDeque<>(changed.size());
+		final int[] counts = new int[2];
+
+		try (BatchGenerator gen = new BatchGenerator(settings, executor, BatchGenerator.defaultWindow(), (diagram, e) -> {
+			final Path output = outputs.poll();
+
+			if (e != null) {
+				System.err.println("Failed to generate UML diagram " + output + ":");
+				e.printStackTrace();
+				return;
+			}
+
+			try {
+				write(output, diagram);
+				counts[0]++;
+			} catch (IOException e1) {
+				System.err.println("Failed to write UML diagram " + output + ":");
+				e1.printStackTrace();
+			}
+		})) {
+			for (Path clazz : changed) {
+				final Path output = output(clazz);
+
+				if (!Files.exists(clazz)) {
+					try {
+						if (Files.deleteIfExists(output))
+							counts[1]++;
+					} catch (IOException e) {
+						System.err.println("Failed to delete UML diagram " + output + ":");
+						e.printStackTrace();
+					}
+					continue;
+				}
+
+				final byte[] code;
+				try {
+					code = Files.readAllBytes(clazz);
+				} catch (IOException e) {
+					// Probably deleted again already; if not, there will be another event for it.
+					continue;
+				}
+
+				outputs.add(output);
+				gen.submit(new IClass.ASM(code));
+			}
+		}
+
+		System.out.println("Updated " + counts[0] + " diagram(s), deleted " + counts[1] + ".");
+	}
+
+	/**
+	 * Replaces the diagram file, such that readers see either the old or the new diagram, never a partial one.
+	 */
+	private static void write(Path output, UMLDiagram diagram) throws IOException {
+		Files.createDirectories(output.getParent());
+
+		Util.writeAtomically(output, os -> {
+			final Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+			diagram.renderTo(writer, 0, diagram.minWidth());
+			writer.write(System.lineSeparator());
+			writer.flush();
+		});
+	}
+}
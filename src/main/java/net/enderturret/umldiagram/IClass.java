@@ -1,5 +1,12 @@
 package net.enderturret.umldiagram;
 
+import java.util.function.BiConsumer;
+
+import org.objectweb.asm.ClassReader;
+
+import net.enderturret.umldiagram.source.Relation;
+import net.enderturret.umldiagram.source.data.ClassData;
+import net.enderturret.umldiagram.source.reflect.ReflectionSource;
 import net.enderturret.umldiagram.util.Settings;
 
 /**
@@ -15,6 +22,28 @@ public interface IClass {
 	 */
 	public UMLDiagram toUML(Settings settings);
 
+	/**
+	 * Gathers the data for a {@link UMLDiagram} without rendering it, so it can be rendered with several formatters.
+	 * @param settings The settings to configure the generator with. The formatter and whether to sort are ignored.
+	 * @return The class data.
+	 * @see UMLDiagrams#render(Settings, ClassData)
+	 */
+	public ClassData extract(Settings settings);
+
+	/**
+	 * Finds the classes this class is related to, for {@link ClassGraph class graphs}.
+	 * @param settings The settings to configure the generator with.
+	 * @param visitor Receives each relationship and the binary name of the class on the other end.
+	 * @return The binary name of this class.
+	 * @see net.enderturret.umldiagram.source.ISource#relations(Object, Settings, BiConsumer)
+	 */
+	public String relations(Settings settings, BiConsumer<Relation, String> visitor);
+
+	/**
+	 * @return The binary name of the class, such as {@code java.util.Map$Entry}.
+	 */
+	public String name();
+
 	/**
 	 * Generates a {@link UMLDiagram} using reflection.
 	 * @author EnderTurret
@@ -31,6 +60,21 @@ public interface IClass {
 		public UMLDiagram toUML(Settings settings) {
 			return UMLDiagrams.generate(settings, clazz);
 		}
+
+		@Override
+		public ClassData extract(Settings settings) {
+			return UMLDiagrams.extract(settings, clazz);
+		}
+
+		@Override
+		public String relations(Settings settings, BiConsumer<Relation, String> visitor) {
+			return ReflectionSource.INSTANCE.relations(clazz, settings, visitor);
+		}
+
+		@Override
+		public String name() {
+			return clazz.getName();
+		}
 	}
 
 	/**
@@ -49,5 +93,20 @@ public interface IClass {
 		public UMLDiagram toUML(Settings settings) {
 			return UMLDiagrams.generate(settings, code);
 		}
+
+		@Override
+		public ClassData extract(Settings settings) {
+			return UMLDiagrams.extract(settings, code);
+		}
+
+		@Override
+		public String relations(Settings settings, BiConsumer<Relation, String> visitor) {
+			return settings.bytecodeSource().relations(code, settings, visitor);
+		}
+
+		@Override
+		public String name() {
+			return new ClassReader(code).getClassName().replace('/', '.');
+		}
 	}
 }
\ No newline at end of file
@@ -1,20 +1,39 @@
 package net.enderturret.umldiagram;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 
 import net.enderturret.umldiagram.gui.Gui;
+import net.enderturret.umldiagram.input.ClassIndex;
+import net.enderturret.umldiagram.input.DirectoryInput;
+import net.enderturret.umldiagram.input.IClassInput;
+import net.enderturret.umldiagram.input.JarInput;
+import net.enderturret.umldiagram.input.JrtInput;
 import net.enderturret.umldiagram.source.Access;
-import net.enderturret.umldiagram.util.Pair;
+import net.enderturret.umldiagram.source.asm.BytecodeSource;
+import net.enderturret.umldiagram.source.asm.ClassFileSource;
+import net.enderturret.umldiagram.util.DiskCache;
 import net.enderturret.umldiagram.util.Settings;
+import net.enderturret.umldiagram.util.StringPool;
 
 /**
  * It's a main class alright.
@@ -22,22 +41,16 @@ import net.enderturret.umldiagram.util.Settings;
  */
 final class Main {
 
-	private static final String VERSION;
+	// The most distinct names shared during a run.
+	private static final int POOL_SIZE = 1 << 20;
 
-	static {
-		String version;
-		try (InputStream is = Main.class.getResourceAsStream("/version"); InputStreamReader isr = new InputStreamReader(is);
-				BufferedReader br = new BufferedReader(isr)) {
-			version = br.readLine();
-		} catch (IOException e) {
-			e.printStackTrace();
-			version = "unknown";
-		}
-		VERSION = "${version}".equals(version) ? "dev" : version;
-	}
+	private static Options parseArgs(String[] args) {
+		final Options options = new Options();
+		final Settings settings = options.settings;
+		final List<IClassInput> list = options.inputs;
 
-	private static Pair<List<IClass>, Settings> parseArgs(String[] args) {
-		final Settings settings = new Settings().sort(false);
+		Path cacheDir = null;
+		long cacheSize = 256;
 
 		int lastArg = 0;
 		int skip = 0;
@@ -53,7 +66,7 @@ final class Main {
 				final String arg = args[i];
 
 				if ("--help".equals(arg)) {
-					final String jar = "UMLDiagram-" + VERSION + ".jar";
+					final String jar = "UMLDiagram-" + Version.VALUE + ".jar";
 					System.out.println("Usage: java -cp <folder containing classes>:. -jar " + jar + " [arguments...] <classes>");
 					System.out.println("   Or: java -jar " + jar + " [arguments...] </path/to/class>.class");
 					System.out.println();
@@ -62,6 +75,10 @@ final class Main {
 					System.out.println("          java -jar " + jar + " --show package,protected java.util.ArrayList");
 					System.out.println("          java -jar " + jar + " --show all MyRectangle.class");
 					System.out.println("          java -jar " + jar + " --show all Animal.class java.lang.String");
+					System.out.println("          java -jar " + jar + " --no-gui --jar library.jar --dir build/classes");
+					System.out.println("          java -jar " + jar + " --watch build/classes build/uml");
+					System.out.println("          java -jar " + jar + " --jar library.jar --out-zip library-uml.zip");
+					System.out.println("          java -jar " + jar + " --class-path library.jar --serve 8080");
 					System.out.println(
 							  "\n--help     Show this text and exit"
 							+ "\n--version  Show the program version and exit"
@@ -75,12 +92,42 @@ final class Main {
 							+ "\n--fqn          Display the class's fully qualified name in the UML header"
 							+ "\n--no-generics  Truncate generics down to raw types"
 							+ "\n--sort         Sort members"
-							+ "\n--no-gui       Do not show the GUI");
+							+ "\n--no-gui       Do not show the GUI"
+							+ "\n--lean         Read class files with the built-in member scanner instead of ASM (same output, faster)"
+							+ "\n--stats        Print how much memory was saved by sharing names, and other statistics, when done"
+							+ "\n"
+							+ "\n--jar <file>   Generate diagrams for every class in the jar file"
+							+ "\n--dir <path>   Generate diagrams for every class file in the directory"
+							+ "\n--jdk <modules>"
+							+ "\n               Generate diagrams for every class in the JDK's modules, without loading them"
+							+ "\n               (comma-separated, or \"all\"; Java 8 always reads all of rt.jar)"
+							+ "\n--watch <dir> <out>"
+							+ "\n               Write a diagram for every class file in the directory to the output directory,"
+							+ "\n               then keep them up to date as the class files change"
+							+ "\n--out <dir>    Write the diagram of each class to its own file in the directory (like a/b/C.txt) instead of printing it"
+							+ "\n--out-zip <file>"
+							+ "\n               Same as --out, but writes the files to a zip file"
+							+ "\n--graph <format>"
+							+ "\n               Print how the classes relate to each other (inheritance, implementation and fields)"
+							+ "\n               instead of their diagrams, as text, dot or json"
+							+ "\n--serve <port>"
+							+ "\n               Serve diagrams over HTTP on localhost, from /diagram?class=<name>, POST /diagram"
+							+ "\n               with a class file, and /jar?path=<file>, as text, html or json (see the README)"
+							+ "\n--package <name>"
+							+ "\n               Only include classes directly in the package in --graph"
+							+ "\n--class-path <paths>"
+							+ "\n               Jars and directories to find superclasses of class files in for --with-super,"
+							+ "\n               separated by \"" + File.pathSeparator + "\" (--jar, --dir and --watch are included automatically)"
+							+ "\n--index <file> Save the index of the class path to the file, and reuse it while the class path doesn't change"
+							+ "\n--threads <n>  The number of threads to generate diagrams on (default: number of processors)"
+							+ "\n--cache <dir>  Cache diagrams generated from class files in the directory, to speed up later runs"
+							+ "\n--cache-size <megabytes>"
+							+ "\n               The maximum size of the cache (default: 256)");
 					return null;
 				}
 
 				else if ("--version".equals(arg)) {
-					System.out.println(VERSION);
+					System.out.println(Version.VALUE);
 					return null;
 				}
 
@@ -110,6 +157,235 @@ final class Main {
 					skip++;
 				}
 
+				else if ("--jar".equals(arg) || "--dir".equals(arg)) {
+					if (i + 1 == args.length) {
+						System.out.println(arg + ": expected one argument.");
+						return null;
+					}
+
+					final Path path = Paths.get(args[i + 1]);
+					final boolean jar = "--jar".equals(arg);
+
+					if (!Files.exists(path))
+						System.out.println("The file \"" + path + "\" could not be found.");
+					else if (jar && Files.isDirectory(path))
+						System.out.println("The file \"" + path + "\" is a directory.");
+					else if (!jar && !Files.isDirectory(path))
+						System.out.println("The file \"" + path + "\" is not a directory.");
+					else {
+						list.add(jar ? new JarInput(path) : new DirectoryInput(path));
+						options.classPath.add(path);
+					}
+
+					skip++;
+				}
+
+				else if ("--jdk".equals(arg)) {
+					if (i + 1 == args.length) {
+						System.out.println("--jdk: expected one argument.");
+						return null;
+					}
+
+					final List<String> modules = "all".equals(args[i + 1]) ? Collections.emptyList() : Arrays.asList(args[i + 1].split(","));
+					final List<String> missing;
+
+					try {
+						missing = JrtInput.missing(modules);
+					} catch (IOException e) {
+						System.err.println("Failed to list the JDK's modules:");
+						e.printStackTrace();
+						return null;
+					}
+
+					if (!modules.isEmpty() && !JrtInput.hasModules())
+						System.out.println("--jdk: Java 8 has no modules, so all of rt.jar is read instead.");
+
+					for (String module : missing)
+						System.out.println("The module \"" + module + "\" could not be found.");
+
+					if (missing.isEmpty())
+						list.add(new JrtInput(modules));
+
+					skip++;
+				}
+
+				else if ("--watch".equals(arg)) {
+					if (i + 2 >= args.length) {
+						System.out.println("--watch: expected two arguments.");
+						return null;
+					}
+
+					final Path dir = Paths.get(args[i + 1]);
+					final Path out = Paths.get(args[i + 2]);
+
+					if (!Files.isDirectory(dir)) {
+						System.out.println("The file \"" + dir + "\" is not a directory.");
+						return null;
+					}
+
+					if (Files.exists(out) && !Files.isDirectory(out)) {
+						System.out.println("The file \"" + out + "\" is not a directory.");
+						return null;
+					}
+
+					options.watchDir = dir;
+					options.watchOut = out;
+					options.classPath.add(dir);
+					skip += 2;
+				}
+
+				else if ("--out".equals(arg) || "--out-zip".equals(arg)) {
+					if (i + 1 == args.length) {
+						System.out.println(arg + ": expected one argument.");
+						return null;
+					}
+
+					final Path path = Paths.get(args[i + 1]);
+					final boolean zip = "--out-zip".equals(arg);
+
+					if (zip && Files.isDirectory(path)) {
+						System.out.println("The file \"" + path + "\" is a directory.");
+						return null;
+					}
+
+					if (!zip && Files.exists(path) && !Files.isDirectory(path)) {
+						System.out.println("The file \"" + path + "\" is not a directory.");
+						return null;
+					}
+
+					options.outPath = path;
+					options.outZip = zip;
+					skip++;
+				}
+
+				else if ("--graph".equals(arg)) {
+					if (i + 1 == args.length) {
+						System.out.println("--graph: expected one argument.");
+						return null;
+					}
+
+					final String format = args[i + 1].toLowerCase(Locale.ENGLISH);
+
+					if (!"text".equals(format) && !"dot".equals(format) && !"json".equals(format)) {
+						System.out.println("--graph: expected text, dot or json, got " + args[i + 1] + ".");
+						return null;
+					}
+
+					options.graphFormat = format;
+					skip++;
+				}
+
+				else if ("--serve".equals(arg)) {
+					if (i + 1 == args.length) {
+						System.out.println("--serve: expected one argument.");
+						return null;
+					}
+
+					try {
+						options.servePort = Integer.parseInt(args[i + 1]);
+						if (options.servePort < 0 || options.servePort > 65535) throw new NumberFormatException();
+					} catch (NumberFormatException e) {
+						System.out.println("--serve: expected a port number, got " + args[i + 1] + ".");
+						return null;
+					}
+
+					skip++;
+				}
+
+				else if ("--package".equals(arg)) {
+					if (i + 1 == args.length) {
+						System.out.println("--package: expected one argument.");
+						return null;
+					}
+
+					options.graphPackage = args[i + 1];
+					skip++;
+				}
+
+				else if ("--class-path".equals(arg)) {
+					if (i + 1 == args.length) {
+						System.out.println("--class-path: expected one argument.");
+						return null;
+					}
+
+					for (String entry : args[i + 1].split(File.pathSeparator)) {
+						if (entry.isEmpty()) continue;
+						final Path path = Paths.get(entry);
+
+						if (!Files.exists(path))
+							System.out.println("The file \"" + path + "\" could not be found.");
+						else
+							options.classPath.add(path);
+					}
+
+					skip++;
+				}
+
+				else if ("--index".equals(arg)) {
+					if (i + 1 == args.length) {
+						System.out.println("--index: expected one argument.");
+						return null;
+					}
+
+					options.indexFile = Paths.get(args[i + 1]);
+
+					if (Files.isDirectory(options.indexFile)) {
+						System.out.println("The file \"" + options.indexFile + "\" is a directory.");
+						return null;
+					}
+
+					skip++;
+				}
+
+				else if ("--threads".equals(arg)) {
+					if (i + 1 == args.length) {
+						System.out.println("--threads: expected one argument.");
+						return null;
+					}
+
+					try {
+						settings.threads(Integer.parseInt(args[i + 1]));
+					} catch (IllegalArgumentException e) {
+						System.out.println("--threads: expected a positive number, got " + args[i + 1] + ".");
+						return null;
+					}
+
+					skip++;
+				}
+
+				else if ("--cache".equals(arg)) {
+					if (i + 1 == args.length) {
+						System.out.println("--cache: expected one argument.");
+						return null;
+					}
+
+					cacheDir = Paths.get(args[i + 1]);
+
+					if (Files.exists(cacheDir) && !Files.isDirectory(cacheDir)) {
+						System.out.println("The file \"" + cacheDir + "\" is not a directory.");
+						return null;
+					}
+
+					skip++;
+				}
+
+				else if ("--cache-size".equals(arg)) {
+					if (i + 1 == args.length) {
+						System.out.println("--cache-size: expected one argument.");
+						return null;
+					}
+
+					try {
+						cacheSize = Long.parseLong(args[i + 1]);
+						if (cacheSize < 1) throw new NumberFormatException();
+					} catch (NumberFormatException e) {
+						System.out.println("--cache-size: expected a positive number, got " + args[i + 1] + ".");
+						return null;
+					}
+
+					skip++;
+				}
+
 				else if ("--no-generics".equals(arg))
 					settings.showGenerics(false);
 				else if ("--sort".equals(arg))
@@ -120,6 +396,10 @@ final class Main {
 					settings.includeObject(true);
 				else if ("--no-gui".equals(arg))
 					settings.noGui(true);
+				else if ("--lean".equals(arg))
+					settings.bytecodeSource(ClassFileSource.INSTANCE);
+				else if ("--stats".equals(arg))
+					options.stats = true;
 				else {
 					if (arg.startsWith("-"))
 						System.out.println("Unrecognized argument: " + arg);
@@ -129,7 +409,29 @@ final class Main {
 				lastArg++;
 			}
 
-		final List<IClass> list = new ArrayList<>(1);
+		if (cacheDir != null)
+			try {
+				// Builds from source are all "dev", so tell them apart by their code instead.
+				final String version = "dev".equals(Version.VALUE) ? "dev-" + DiskCache.checksum(Main.class) : Version.VALUE;
+				settings.cache(new DiskCache(cacheDir, cacheSize * 1024 * 1024, version));
+			} catch (IOException e) {
+				System.err.println("Failed to open cache in " + cacheDir + ":");
+				e.printStackTrace();
+			}
+
+		// Only index the class path if something is going to be looked up in it.
+		ClassIndex index = null;
+		if (!options.classPath.isEmpty() && (settings.withSuper() || lastArg < args.length || options.servePort != -1))
+			try {
+				options.index = index = options.indexFile != null ? ClassIndex.open(options.classPath, options.indexFile) : ClassIndex.build(options.classPath);
+			} catch (IOException e) {
+				System.err.println("Failed to index the class path:");
+				e.printStackTrace();
+			}
+
+		// Requests to the server can ask for superclasses too.
+		if (settings.withSuper() || options.servePort != -1)
+			settings.hierarchy(new ClassHierarchy(index));
 
 		for (int i = lastArg; i < args.length; i++) {
 			final String clazzName = args[i];
@@ -142,7 +444,7 @@ final class Main {
 					System.out.println("The file \"" + path + "\" is a directory.");
 				else
 					try {
-						list.add(new IClass.ASM(Files.readAllBytes(path)));
+						list.add(IClassInput.of(new IClass.ASM(Files.readAllBytes(path))));
 					} catch (IOException e) {
 						e.printStackTrace();
 					}
@@ -150,29 +452,248 @@ final class Main {
 
 			else
 				try {
+					final byte[] code = index != null ? index.find(clazzName) : null;
+					if (code != null) {
+						list.add(IClassInput.of(new IClass.ASM(code)));
+						continue;
+					}
+
 					final Class clazz = Class.forName(clazzName, false, Thread.currentThread().getContextClassLoader());
-					list.add(new IClass.Reflected(clazz));
+					list.add(IClassInput.of(new IClass.Reflected(clazz)));
 				} catch (ClassNotFoundException e) {
 					System.out.println("The class \"" + clazzName + "\" could not be found.");
+				} catch (IOException e) {
+					System.err.println("Failed to read " + clazzName + ":");
+					e.printStackTrace();
 				}
 		}
 
-		return new Pair<>(list, settings);
+		return options;
 	}
 
 	public static void main(String[] args) {
 		if (args.length == 1 && "--no-gui".equals(args[0]))
 			args = new String[] { "--no-gui", "--help" };
 
-		final Pair<List<IClass>, Settings> pair = parseArgs(args);
-		if (pair == null) return;
+		final Options options = parseArgs(args);
+		if (options == null) return;
+
+		final Settings settings = options.settings;
+
+		// Share names between diagrams for the rest of the run.
+		// The server, the GUI and the watcher keep diagrams around for as long as they run, so the pool is only closed after the other modes.
+		final StringPool pool = StringPool.open(POOL_SIZE);
+
+		if (options.servePort != -1) {
+			try {
+				new DiagramServer(options.servePort, settings, options.index).start();
+			} catch (IOException e) {
+				System.err.println("Failed to start the server on port " + options.servePort + ":");
+				e.printStackTrace();
+			}
+		} else if (options.watchDir != null) {
+			final ExecutorService executor = workers(settings);
+
+			try {
+				new DirectoryWatcher(options.watchDir, options.watchOut, settings, executor).run();
+			} catch (IOException e) {
+				System.err.println("Failed to watch " + options.watchDir + ":");
+				e.printStackTrace();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				executor.shutdown();
+			}
+		} else if (options.graphFormat != null) {
+			final ClassGraph.Builder builder = new ClassGraph.Builder(settings, options.graphPackage);
+
+			for (IClassInput input : options.inputs)
+				forEach(input, clazz -> {
+					try {
+						builder.add(clazz);
+					} catch (RuntimeException e) {
+						System.err.println("Failed to read class:");
+						e.printStackTrace();
+					}
+					return true;
+				});
+
+			final ClassGraph graph = builder.build();
+			final Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+
+			try {
+				if ("dot".equals(options.graphFormat))
+					graph.renderDot(out);
+				else if ("json".equals(options.graphFormat))
+					graph.renderJson(out);
+				else
+					graph.renderText(out);
+				out.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+
+			pool.close();
+		} else if (options.outPath != null) {
+			final ExecutorService executor = workers(settings);
+
+			try (DiagramWriter writer = options.outZip ? DiagramWriter.zip(options.outPath) : DiagramWriter.directory(options.outPath)) {
+				// The generator hands out diagrams in the order the classes were submitted, so their names can just be queued up alongside.
+				final ArrayDeque<String> names = new ArrayDeque<>();
+
+				try (BatchGenerator gen = new BatchGenerator(settings, executor, BatchGenerator.defaultWindow(), (diagram, e) -> {
+					final String name = names.poll();
+
+					if (e != null) {
+						System.err.println("Failed to generate UML diagram for " + name + ":");
+						e.printStackTrace();
+					} else
+						writer.write(name, diagram);
+				})) {
+					for (IClassInput input : options.inputs)
+						forEach(input, clazz -> {
+							try {
+								names.add(clazz.name());
+							} catch (RuntimeException e) {
+								System.err.println("Failed to read class:");
+								e.printStackTrace();
+								return true;
+							}
+
+							gen.submit(clazz);
+							return true;
+						});
+				}
+
+				writer.finish();
+				System.out.println("Wrote " + writer.written() + " diagram(s) to " + options.outPath + (writer.failed() != 0 ? ", failed to write " + writer.failed() + "." : "."));
+			} catch (IOException e) {
+				System.err.println("Failed to write to " + options.outPath + ":");
+				e.printStackTrace();
+			} finally {
+				executor.shutdown();
+			}
+
+			if (options.stats)
+				printStats(settings, pool);
+			pool.close();
+		} else if (settings.noGui()) {
+			final ExecutorService executor = workers(settings);
+
+			final Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+
+			// Print each diagram as soon as it's generated (in order), so whole jars don't need to be held in memory.
+			try (BatchGenerator gen = new BatchGenerator(settings, executor, BatchGenerator.defaultWindow(), (diagram, e) -> {
+				if (e != null) {
+					System.err.println("Failed to generate UML diagram:");
+					e.printStackTrace();
+				} else
+					try {
+						diagram.renderTo(out, 0, diagram.minWidth());
+						out.write(System.lineSeparator());
+						out.flush();
+					} catch (IOException e1) {
+						throw new UncheckedIOException(e1);
+					}
+			})) {
+				for (IClassInput input : options.inputs)
+					forEach(input, clazz -> {
+						gen.submit(clazz);
+						return true;
+					});
+			} finally {
+				executor.shutdown();
+			}
+
+			if (options.stats)
+				printStats(settings, pool);
+			pool.close();
+		} else {
+			final IClass[] initial = new IClass[1];
+
+			for (IClassInput input : options.inputs)
+				if (!forEach(input, clazz -> {
+					initial[0] = clazz;
+					return false;
+				}))
+					break;
 
-		if (pair.right().noGui())
-			for (IClass clazz : pair.left())
-				System.out.println(clazz.toUML(pair.right()));
-		else {
-			final IClass initial = pair.left().isEmpty() ? null : pair.left().get(0);
-			new Gui(VERSION, initial);
+			openGui(initial[0]);
+		}
+	}
+
+	/**
+	 * The only place the GUI is referenced, so that runs with {@code --no-gui} never load (or verify) any AWT or Swing classes.
+	 */
+	private static void openGui(IClass initial) {
+		new Gui(Version.VALUE, initial);
+	}
+
+	private static void printStats(Settings settings, StringPool pool) {
+		System.err.println(String.format(Locale.ENGLISH, "Names: %d distinct, %d duplicates replaced (up to %.1f MiB, if every copy had been kept)",
+				pool.size(), pool.duplicates(), pool.savedBytes() / (1024.0 * 1024.0)));
+		System.err.println("Signatures: " + BytecodeSource.signatureCache());
+		if (settings.cache() != null)
+			System.err.println("Disk cache: " + settings.cache());
+		if (settings.hierarchy() != null)
+			System.err.println("Superclasses: " + settings.hierarchy().size() + " cached");
+	}
+
+	private static ExecutorService workers(Settings settings) {
+		return Executors.newFixedThreadPool(settings.threads(), r -> {
+			final Thread t = new Thread(r, "UMLDiagram worker");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	private static boolean forEach(IClassInput input, Predicate<IClass> visitor) {
+		try {
+			return input.forEach(visitor);
+		} catch (IOException e) {
+			System.err.println("Failed to read " + input + ":");
+			e.printStackTrace();
+			return true;
+		}
+	}
+
+	private static final class Options {
+
+		private final List<IClassInput> inputs = new ArrayList<>(1);
+		private final Settings settings = new Settings().sort(false);
+
+		// Where to look for superclasses of class files.
+		private final List<Path> classPath = new ArrayList<>();
+
+		private Path indexFile;
+		private ClassIndex index;
+		private int servePort = -1;
+		private String graphFormat;
+		private String graphPackage;
+		private boolean stats;
+		private Path watchDir;
+		private Path watchOut;
+		private Path outPath;
+		private boolean outZip;
+	}
+
+	/**
+	 * Holds the program version, which is only read from the jar the first time it's needed (which most runs never do).
+	 */
+	private static final class Version {
+
+		private static final String VALUE;
+
+		static {
+			String version;
+			try (InputStream is = Main.class.getResourceAsStream("/version"); InputStreamReader isr = new InputStreamReader(is);
+					BufferedReader br = new BufferedReader(isr)) {
+				version = br.readLine();
+			} catch (IOException e) {
+				e.printStackTrace();
+				version = "unknown";
+			}
+			VALUE = "${version}".equals(version) ? "dev" : version;
 		}
 	}
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package net.enderturret.umldiagram;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -10,7 +12,7 @@ import net.enderturret.umldiagram.util.Util;
 
 /**
  * Represents a UML diagram.
- * These can be queried for limited information, or turned into diagrams using {@link #toString(int, int)}.
+ * These can be queried for limited information, or turned into diagrams using {@link #toString(int, int)} or {@link #renderTo(Appendable, int, int)}.
  * @author EnderTurret
  */
 public class UMLDiagram {
@@ -59,13 +61,28 @@ public class UMLDiagram {
 	 * @return The diagram.
 	 */
 	public String toString(int leftPadding, int width) {
-		if (width < minWidth)
-			width = minWidth;
-
 		final StringBuilder sb = new StringBuilder();
 
-		final String sep = Util.repeat("─", width);
-		final String leftPad = Util.repeat(" ", leftPadding);
+		try {
+			renderTo(sb, leftPadding, width);
+		} catch (IOException e) { // StringBuilder doesn't throw these.
+			throw new UncheckedIOException(e);
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Writes this {@link UMLDiagram} to the given {@link Appendable} row by row, without building the whole diagram in memory first.
+	 * The output is identical to {@link #toString(int, int)}, so it doesn't end with a newline.
+	 * @param out Where to write the diagram to.
+	 * @param leftPadding The number of spaces to pad the left of the diagram with.
+	 * @param width The width of the diagram. Will be corrected to at least the minimum width.
+	 * @throws IOException If {@code out} throws one.
+	 */
+	public void renderTo(Appendable out, int leftPadding, int width) throws IOException {
+		if (width < minWidth)
+			width = minWidth;
 
 		/*
 		 * ┌───────────────────────────┐
@@ -81,7 +98,10 @@ public class UMLDiagram {
 		 * └───────────────────────────┘
 		 */
 
-		sb.append(leftPad).append("┌").append(sep).append("┐\n");
+		Util.repeat(out, ' ', leftPadding);
+		out.append('┌');
+		Util.repeat(out, '─', width);
+		out.append("┐\n");
 
 		double clazzPadding = (width - clazzName.width()) / 2.0;
 		if (clazzPadding < 0) {
@@ -91,19 +111,32 @@ public class UMLDiagram {
 			clazzPadding = 0;
 		}
 
-		sb.append(leftPad).append("│").append(Util.repeat(" ", (int) clazzPadding)).append(clazzName.text()).append(Util.repeat(" ", (int) Math.ceil(clazzPadding))).append("│");
+		Util.repeat(out, ' ', leftPadding);
+		out.append('│');
+		Util.repeat(out, ' ', (int) clazzPadding);
+		out.append(clazzName.text());
+		Util.repeat(out, ' ', (int) Math.ceil(clazzPadding));
+		out.append('│');
 
 		for (Line line : lines) {
-			sb.append("\n");
-			if (line == ISource.SEPARATOR_LINE) // == is okay here.
-				sb.append(leftPad).append("├").append(sep).append("┤");
-			else
-				sb.append(leftPad).append("│").append(line).append(Util.repeat(" ", width - line.width())).append("│");
+			out.append('\n');
+			Util.repeat(out, ' ', leftPadding);
+			if (line == ISource.SEPARATOR_LINE) { // == is okay here.
+				out.append('├');
+				Util.repeat(out, '─', width);
+				out.append('┤');
+			} else {
+				out.append('│').append(line.text());
+				Util.repeat(out, ' ', width - line.width());
+				out.append('│');
+			}
 		}
 
-		sb.append("\n").append(leftPad).append("└").append(sep).append("┘");
-
-		return sb.toString();
+		out.append('\n');
+		Util.repeat(out, ' ', leftPadding);
+		out.append('└');
+		Util.repeat(out, '─', width);
+		out.append('┘');
 	}
 
 	@Override
@@ -1,22 +1,29 @@
 package net.enderturret.umldiagram;
 
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Modifier;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import net.enderturret.umldiagram.source.Access;
 import net.enderturret.umldiagram.source.ISource;
-import net.enderturret.umldiagram.source.asm.BytecodeSource;
+import net.enderturret.umldiagram.source.data.ClassData;
 import net.enderturret.umldiagram.source.data.Line;
 import net.enderturret.umldiagram.source.reflect.ReflectionSource;
+import net.enderturret.umldiagram.util.DiskCache;
 import net.enderturret.umldiagram.util.Settings;
 import net.enderturret.umldiagram.util.Util;
 
@@ -24,6 +31,7 @@ import net.enderturret.umldiagram.util.Util;
  * Generates UML diagrams for any class either reflectively or through bytecode analysis.
  * @see #generate(Settings, Class)
  * @see #generate(Settings, byte[], byte[][])
+ * @see #generateAll(Collection, Settings, Executor)
  * @author EnderTurret
  */
 public final class UMLDiagrams {
@@ -32,19 +40,35 @@ public final class UMLDiagrams {
 
 	/**
 	 * Generates a UML diagram for the given class.
+	 * Diagrams are cached per class and settings, so generating the same class again with equal settings returns the same diagram.
 	 * @param clazz The class to generate a UML diagram for.
 	 * @param settings Configuration for the diagram's appearance, along with what all should be shown in it.
 	 * @return The UML diagram.
 	 */
 	public static UMLDiagram generate(Settings settings, Class<?> clazz) {
-		return maybeChain(settings, generate(ReflectionSource.INSTANCE, clazz, settings), includeObject -> {
+		return generate(settings, clazz, settings.diagramFingerprint());
+	}
+
+	/**
+	 * Same as {@link #generate(Settings, Class)}, except that the class (and its superclasses) are always walked again,
+	 * without looking in or adding to the cache. This is mainly useful for measuring the reflection source itself.
+	 * @param clazz The class to generate a UML diagram for.
+	 * @param settings Configuration for the diagram's appearance, along with what all should be shown in it.
+	 * @return The UML diagram.
+	 */
+	public static UMLDiagram generateUncached(Settings settings, Class<?> clazz) {
+		return generate(settings, clazz, null);
+	}
+
+	private static UMLDiagram generate(Settings settings, Class<?> clazz, Settings.Fingerprint fingerprint) {
+		return maybeChain(settings, reflected(clazz, settings, fingerprint), includeObject -> {
 			final List<UMLDiagram> grams = new ArrayList<>();
 			Class<?> sup = clazz;
 
 			while ((sup = sup.getSuperclass()) != null) {
 				if (!includeObject && sup == Object.class)
 					break;
-				grams.add(0, generate(ReflectionSource.INSTANCE, sup, settings));
+				grams.add(0, reflected(sup, settings, fingerprint));
 			}
 
 			return grams.toArray(new UMLDiagram[0]);
@@ -56,21 +80,150 @@ public final class UMLDiagrams {
 	 * @param clazzData The Java bytecode of the class to generate a UML diagram for.
 	 * @param settings Configuration for the diagram's appearance, along with what all should be shown in it.
 	 * @param superClazzData An array containing the superclass hierarchy of {@code clazzData}.
+	 * If this is empty, the superclasses are looked up in the {@link Settings#hierarchy() class hierarchy} instead, if there is one.
 	 * @return The UML diagram.
 	 */
 	public static UMLDiagram generate(Settings settings, byte[] clazzData, byte[]... superClazzData) {
-		return maybeChain(settings, generate(BytecodeSource.INSTANCE, clazzData, settings), includeObject -> {
+		final DiskCache cache = settings.cache();
+		final Settings.Fingerprint fingerprint = cache != null ? settings.diagramFingerprint() : null;
+
+		return maybeChain(settings, bytecode(clazzData, settings, cache, fingerprint), includeObject -> {
+			if (superClazzData.length == 0 && settings.hierarchy() != null)
+				return settings.hierarchy().parents(clazzData, settings, includeObject);
+
 			final List<UMLDiagram> grams = Arrays.stream(superClazzData)
-					.map(scd -> generate(BytecodeSource.INSTANCE, scd, settings))
+					.map(scd -> bytecode(scd, settings, cache, fingerprint))
 					.collect(Collectors.toList());
 
-			if (!includeObject && ("Object".equals(grams.get(0).clazzName()) || "java.lang.Object".equals(grams.get(0).clazzName())))
+			if (!includeObject && !grams.isEmpty() && ("Object".equals(grams.get(0).clazzName()) || "java.lang.Object".equals(grams.get(0).clazzName())))
 				grams.remove(0);
 
 			return grams.toArray(new UMLDiagram[0]);
 		});
 	}
 
+	/**
+	 * Gathers the data for a UML diagram of the given class using reflection, without rendering it.
+	 * @param settings Configuration for what should be in the diagram. The formatter and whether to sort are ignored.
+	 * @param clazz The class.
+	 * @return The class data.
+	 * @see #render(Settings, ClassData)
+	 */
+	public static ClassData extract(Settings settings, Class<?> clazz) {
+		return ReflectionSource.INSTANCE.extract(clazz, settings);
+	}
+
+	/**
+	 * Gathers the data for a UML diagram of the given class bytecode, without rendering it.
+	 * @param settings Configuration for what should be in the diagram. The formatter and whether to sort are ignored.
+	 * @param clazzData The Java bytecode of the class.
+	 * @return The class data.
+	 * @see #render(Settings, ClassData)
+	 */
+	public static ClassData extract(Settings settings, byte[] clazzData) {
+		return settings.bytecodeSource().extract(clazzData, settings);
+	}
+
+	/**
+	 * Renders previously extracted class data into a UML diagram.
+	 * The same data can be rendered any number of times, with different formatters or sorting.
+	 * @param settings The formatter to use and whether to sort members. Everything else was decided when the data was extracted.
+	 * @param data The class data.
+	 * @return The UML diagram.
+	 */
+	public static UMLDiagram render(Settings settings, ClassData data) {
+		final List<Line> lines = new ArrayList<>();
+		data.render(lines, settings);
+		return new UMLDiagram(lines);
+	}
+
+	/**
+	 * Generates UML diagrams for all the given classes in parallel.
+	 * @param classes The classes to generate UML diagrams for.
+	 * @param settings Configuration for the diagrams' appearance, along with what all should be shown in them.
+	 * @param executor The executor to generate the diagrams on.
+	 * @return The UML diagrams, in the same order as {@code classes}.
+	 * @throws RuntimeException If any of the diagrams failed to generate.
+	 * @see BatchGenerator
+	 */
+	public static List<UMLDiagram> generateAll(Collection<? extends IClass> classes, Settings settings, Executor executor) {
+		final List<UMLDiagram> ret = new ArrayList<>(classes.size());
+
+		try (BatchGenerator gen = new BatchGenerator(settings, executor, BatchGenerator.defaultWindow(), (diagram, e) -> {
+			if (e instanceof RuntimeException) throw (RuntimeException) e;
+			if (e instanceof Error) throw (Error) e;
+			if (e != null) throw new IllegalStateException(e);
+			ret.add(diagram);
+		})) {
+			for (IClass clazz : classes)
+				gen.submit(clazz);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Generates UML diagrams for all the given classes in parallel, using the {@link ForkJoinPool#commonPool() common pool}.
+	 * @param classes The classes to generate UML diagrams for.
+	 * @param settings Configuration for the diagrams' appearance, along with what all should be shown in them.
+	 * @return The UML diagrams, in the same order as {@code classes}.
+	 * @see #generateAll(Collection, Settings, Executor)
+	 */
+	public static List<UMLDiagram> generateAll(Collection<? extends IClass> classes, Settings settings) {
+		return generateAll(classes, settings, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * <p>Caches reflectively generated diagrams per class and {@link Settings#diagramFingerprint() fingerprint}, before they're chained to their superclasses.</p>
+	 * <p>
+	 * This way classes like {@link Object} only have to be walked once, even if they appear in lots of inheritance chains.
+	 * Since this is a {@link ClassValue}, the cached diagrams go away along with their class loader.
+	 * They are also softly referenced, so huge batch runs don't fill up the heap with them.
+	 * </p>
+	 */
+	private static final ClassValue<Map<Settings.Fingerprint, SoftReference<UMLDiagram>>> REFLECTED = new ClassValue<Map<Settings.Fingerprint, SoftReference<UMLDiagram>>>() {
+		@Override
+		protected Map<Settings.Fingerprint, SoftReference<UMLDiagram>> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>(2);
+		}
+	};
+
+	/**
+	 * @param fingerprint The {@link Settings#diagramFingerprint() diagram fingerprint} of the settings, or {@code null} to bypass the cache.
+	 */
+	private static UMLDiagram reflected(Class<?> clazz, Settings settings, Settings.Fingerprint fingerprint) {
+		if (fingerprint == null)
+			return generate(ReflectionSource.INSTANCE, clazz, settings);
+
+		final Map<Settings.Fingerprint, SoftReference<UMLDiagram>> cache = REFLECTED.get(clazz);
+		final SoftReference<UMLDiagram> ref = cache.get(fingerprint);
+
+		UMLDiagram diagram = ref != null ? ref.get() : null;
+
+		if (diagram == null) {
+			diagram = generate(ReflectionSource.INSTANCE, clazz, settings);
+			cache.put(fingerprint, new SoftReference<>(diagram));
+		}
+
+		return diagram;
+	}
+
+	static UMLDiagram bytecode(byte[] code, Settings settings, DiskCache cache, Settings.Fingerprint fingerprint) {
+		if (cache == null)
+			return generate(settings.bytecodeSource(), code, settings);
+
+		final String key = cache.key(code, fingerprint);
+		List<Line> lines = cache.get(key);
+
+		if (lines == null) {
+			lines = new ArrayList<>();
+			settings.bytecodeSource().generate(lines, code, settings);
+			cache.put(key, lines);
+		}
+
+		return new UMLDiagram(lines);
+	}
+
 	private static <T> UMLDiagram generate(ISource<T> handler, T source, Settings settings) {
 		final List<Line> lines = new ArrayList<>();
 		handler.generate(lines, source, settings);
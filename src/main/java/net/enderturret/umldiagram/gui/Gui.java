@@ -13,6 +13,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 
 import javax.swing.JCheckBoxMenuItem;
@@ -26,6 +27,7 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextPane;
+import javax.swing.SwingWorker;
 import javax.swing.TransferHandler;
 import javax.swing.filechooser.FileFilter;
 import javax.swing.text.html.HTMLEditorKit;
@@ -35,6 +37,7 @@ import net.enderturret.umldiagram.UMLDiagram;
 import net.enderturret.umldiagram.UMLDiagrams;
 import net.enderturret.umldiagram.source.Access;
 import net.enderturret.umldiagram.source.IDiagramFormatter;
+import net.enderturret.umldiagram.source.data.ClassData;
 import net.enderturret.umldiagram.util.Settings;
 import net.enderturret.umldiagram.util.Util;
 
@@ -53,6 +56,11 @@ public class Gui extends JFrame {
 	private String diagram;
 	private String diagramHtml;
 
+	// The generation that's currently running, if any. Only accessed on the event dispatch thread.
+	private SwingWorker<Result, Void> worker;
+	// The result of the last generation, which is reused if only the sorting changes.
+	private Result data;
+
 	public Gui(String version, IClass initial) {
 		initUI(version, initial);
 		setVisible(true);
@@ -204,18 +212,63 @@ public class Gui extends JFrame {
 			settings.setAllVisible();
 
 		if (formatting)
-			settings.formatter(new HtmlDiagramFormatter());
+			settings.formatter(HtmlDiagramFormatter.INSTANCE);
 
 		return settings;
 	}
 
+	/**
+	 * Regenerates the diagram in the background, since big classes can take a while.
+	 * Any generation that's still running is cancelled, so only the diagram for the latest class and settings ever gets shown.
+	 * The class is only read again if it or the visibility changed; otherwise the previous {@link ClassData} is just rendered again.
+	 */
 	private void refresh() {
-		if (source != null) {
-			diagramHtml = "<pre>" + source.toUML(settings(true)).toString() + "</pre>";
-			diagram = source.toUML(settings(false)).toString();
-			area.setText(diagramHtml);
-			//.replaceAll("\\b(boolean|byte|int|short|long|float|double)\\b", "<span color=\"800000\">$1</span>")
-		}
+		if (source == null) return;
+
+		if (worker != null)
+			worker.cancel(false);
+
+		final IClass source = this.source;
+		final boolean onlyPublic = this.onlyPublic.isSelected();
+		final ClassData previous = data != null && data.source == source && data.onlyPublic == onlyPublic ? data.data : null;
+		final Settings htmlSettings = settings(true);
+		final Settings plainSettings = settings(false);
+
+		worker = new SwingWorker<Result, Void>() {
+			@Override
+			protected Result doInBackground() {
+				final ClassData data = previous != null ? previous : source.extract(plainSettings);
+				if (isCancelled()) return null;
+
+				final String html = "<pre>" + UMLDiagrams.render(htmlSettings, data).toString() + "</pre>";
+				return new Result(source, onlyPublic, data, html, UMLDiagrams.render(plainSettings, data).toString());
+			}
+
+			@Override
+			protected void done() {
+				if (worker != this || isCancelled()) return;
+				worker = null;
+
+				final Result result;
+
+				try {
+					result = get();
+				} catch (InterruptedException e) {
+					return;
+				} catch (ExecutionException e) {
+					JOptionPane.showMessageDialog(Gui.this, "The UML diagram couldn't be generated.\n\n" + Util.getStackTrace(e.getCause()), "Failed to Generate Diagram", JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+
+				data = result;
+				diagramHtml = result.html;
+				diagram = result.plain;
+				area.setText(diagramHtml);
+				//.replaceAll("\\b(boolean|byte|int|short|long|float|double)\\b", "<span color=\"800000\">$1</span>")
+			}
+		};
+
+		worker.execute();
 	}
 
 	private void open(File file) {
@@ -231,4 +284,21 @@ public class Gui extends JFrame {
 	private void setClipboard(String text) {
 		Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(text), null);
 	}
+
+	private static final class Result {
+
+		private final IClass source;
+		private final boolean onlyPublic;
+		private final ClassData data;
+		private final String html;
+		private final String plain;
+
+		Result(IClass source, boolean onlyPublic, ClassData data, String html, String plain) {
+			this.source = source;
+			this.onlyPublic = onlyPublic;
+			this.data = data;
+			this.html = html;
+			this.plain = plain;
+		}
+	}
 }
\ No newline at end of file
@@ -2,12 +2,18 @@ package net.enderturret.umldiagram.gui;
 
 import net.enderturret.umldiagram.source.Access;
 import net.enderturret.umldiagram.source.IDiagramFormatter;
+import net.enderturret.umldiagram.source.data.LineBuilder;
 
 /**
- * The formatter used for the GUI.
+ * The formatter used for the GUI and for HTML diagrams from the server.
  * @author EnderTurret
  */
-class HtmlDiagramFormatter implements IDiagramFormatter {
+public final class HtmlDiagramFormatter implements IDiagramFormatter {
+
+	// Shared so that settings using it fingerprint the same, and cached diagrams can be reused.
+	public static final HtmlDiagramFormatter INSTANCE = new HtmlDiagramFormatter();
+
+	private HtmlDiagramFormatter() {}
 
 	@Override
 	public String formatAccess(Access access) {
@@ -39,6 +45,44 @@ class HtmlDiagramFormatter implements IDiagramFormatter {
 		return escapeHTML(name);
 	}
 
+	@Override
+	public void appendAccess(LineBuilder line, Access access) {
+		escapeHTML(line, access.character());
+	}
+
+	@Override
+	public void appendType(LineBuilder line, String type) {
+		escapeHTML(line, type);
+	}
+
+	@Override
+	public void appendMethodName(LineBuilder line, String name) {
+		escapeHTML(line, name);
+	}
+
+	@Override
+	public void appendParameter(LineBuilder line, String name) {
+		escapeHTML(line, name);
+	}
+
+	@Override
+	public void appendFieldName(LineBuilder line, String name) {
+		escapeHTML(line, name);
+	}
+
+	private static void escapeHTML(LineBuilder line, String s) {
+		for (int i = 0; i < s.length(); i++)
+			escapeHTML(line, s.charAt(i));
+	}
+
+	// Escaped characters still only take up one column.
+	private static void escapeHTML(LineBuilder line, char c) {
+		if (c > 127 || c == '"' || c == '\'' || c == '<' || c == '>' || c == '&')
+			line.append("&#" + (int) c + ';', 1);
+		else
+			line.append(c);
+	}
+
 	// https://stackoverflow.com/a/25228492
 	private static String escapeHTML(String s) {
 		final StringBuilder out = new StringBuilder(Math.max(16, s.length()));
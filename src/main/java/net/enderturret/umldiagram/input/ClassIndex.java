@@ -0,0 +1,486 @@
+package net.enderturret.umldiagram.input;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+
+import net.enderturret.umldiagram.util.Util;
+
+/**
+ * <p>Maps binary class names (like {@code java.util.Map$Entry}) to where their class files are, across a list of jars, jmods and directories.</p>
+ * <p>
+ * The index is a single open-addressed hash table, so finding a class takes the same time no matter how many archives there are.
+ * For archives, the index remembers where each entry is, so reading a class doesn't involve looking through the archive's entries either.
+ * If the same class is in more than one place, the first one wins, just like a class path.
+ * </p>
+ * <p>
+ * Indexes are built by scanning every input in parallel.
+ * They can also be saved to a file with {@link #open(List, Path)}, which memory-maps the saved index on later runs instead of scanning again,
+ * as long as none of the inputs have changed.
+ * </p>
+ * <p>This class is thread-safe.</p>
+ * @author EnderTurret
+ */
+public final class ClassIndex implements AutoCloseable {
+
+	private static final int MAGIC = 0x554D4C49; // UMLI
+	private static final int FORMAT = 1;
+
+	// Each record is eight ints: the name's hash, offset and length, the input, and (for archives) where the entry is.
+	private static final int RECORD_SIZE = 32;
+	private static final int HASH = 0;
+	private static final int NAME = 4;
+	private static final int NAME_LENGTH = 8;
+	private static final int ROOT = 12;
+	private static final int METHOD = 16;
+	private static final int LOCAL_OFFSET = 20;
+	private static final int COMPRESSED_SIZE = 24;
+	private static final int SIZE = 28;
+
+	// Special compression methods for classes that aren't read with MappedZip.
+	private static final int DIRECTORY = -1;
+	private static final int JAR_FILE = -2;
+
+	private final List<Path> roots;
+	private final ByteBuffer data;
+	private final int entries;
+	private final int mask;
+	private final int tableOffset;
+	private final int recordsOffset;
+	private final int namesOffset;
+
+	// The archives that have been read from so far, as MappedZips or JarFiles.
+	private final AtomicReferenceArray<AutoCloseable> archives;
+
+	private ClassIndex(List<Path> roots, ByteBuffer data) {
+		this.roots = roots;
+		this.data = data;
+
+		int pos = header(data).position();
+		entries = data.getInt(pos);
+		final int tableSize = data.getInt(pos + 4);
+		mask = tableSize - 1;
+		tableOffset = pos + 8;
+		recordsOffset = tableOffset + tableSize * 4;
+		namesOffset = recordsOffset + entries * RECORD_SIZE;
+
+		archives = new AtomicReferenceArray<>(roots.size());
+	}
+
+	/**
+	 * Indexes the given jars, jmods and directories in parallel.
+	 * @param roots The inputs, in order of precedence.
+	 * @return The index.
+	 * @throws IOException If one of the inputs could not be read.
+	 */
+	public static ClassIndex build(List<Path> roots) throws IOException {
+		final List<Path> normalized = normalize(roots);
+		return new ClassIndex(normalized, ByteBuffer.wrap(encode(normalized, scan(normalized))));
+	}
+
+	/**
+	 * Loads the index saved in the given file, if it was built from the same inputs and none of them have changed since.
+	 * Otherwise, the index is built again and saved to the file.
+	 * @param roots The inputs, in order of precedence.
+	 * @param file Where the index is saved.
+	 * @return The index.
+	 * @throws IOException If one of the inputs could not be read, or the index could not be saved.
+	 */
+	public static ClassIndex open(List<Path> roots, Path file) throws IOException {
+		final List<Path> normalized = normalize(roots);
+
+		if (Files.isRegularFile(file)) {
+			final ByteBuffer map;
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+
+			if (isUpToDate(map, normalized))
+				return new ClassIndex(normalized, map);
+		}
+
+		final byte[] encoded = encode(normalized, scan(normalized));
+
+		Util.writeAtomically(file, encoded);
+
+		return new ClassIndex(normalized, ByteBuffer.wrap(encoded));
+	}
+
+	private static List<Path> normalize(List<Path> roots) {
+		return roots.stream().map(p -> p.toAbsolutePath().normalize()).collect(Collectors.toList());
+	}
+
+	/**
+	 * @param name The binary name of a class, like {@code java.util.Map$Entry}.
+	 * @return {@code true} if the class is in the index.
+	 */
+	public boolean contains(String name) {
+		return record(name) != -1;
+	}
+
+	/**
+	 * Reads a class.
+	 * @param name The binary name of the class, like {@code java.util.Map$Entry}.
+	 * @return The bytecode of the class, or {@code null} if it's not in the index.
+	 * @throws IOException If the class could not be read.
+	 */
+	public byte[] find(String name) throws IOException {
+		final int record = record(name);
+		if (record == -1) return null;
+
+		final int root = data.getInt(record + ROOT);
+		final int method = data.getInt(record + METHOD);
+		final String file = name.replace('.', '/') + ".class";
+
+		if (method == DIRECTORY)
+			try {
+				return Files.readAllBytes(roots.get(root).resolve(file));
+			} catch (NoSuchFileException e) {
+				return null; // Deleted since it was indexed.
+			}
+
+		final AutoCloseable archive = archive(root);
+
+		if (method == JAR_FILE) {
+			final JarFile jar = (JarFile) archive;
+			final ZipEntry entry = jar.getEntry(file);
+			if (entry == null) return null;
+
+			try (InputStream is = jar.getInputStream(entry)) {
+				return Util.readAllBytes(is, (int) entry.getSize());
+			}
+		}
+
+		return ((MappedZip) archive).read(name, data.getInt(record + LOCAL_OFFSET), method, data.getInt(record + COMPRESSED_SIZE), data.getInt(record + SIZE));
+	}
+
+	/**
+	 * @return The number of classes in the index.
+	 */
+	public int size() {
+		return entries;
+	}
+
+	/**
+	 * @return The inputs this index was built from.
+	 */
+	public List<Path> roots() {
+		return roots;
+	}
+
+	private int record(String name) {
+		final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		final int hash = hash(name);
+
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			final int idx = data.getInt(tableOffset + slot * 4);
+			if (idx == 0) return -1;
+
+			final int record = recordsOffset + (idx - 1) * RECORD_SIZE;
+			if (data.getInt(record + HASH) == hash && nameEquals(record, bytes))
+				return record;
+		}
+	}
+
+	private boolean nameEquals(int record, byte[] name) {
+		if (data.getInt(record + NAME_LENGTH) != name.length) return false;
+
+		final int offset = namesOffset + data.getInt(record + NAME);
+		for (int i = 0; i < name.length; i++)
+			if (data.get(offset + i) != name[i])
+				return false;
+
+		return true;
+	}
+
+	private static int hash(String name) {
+		final int h = name.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private AutoCloseable archive(int root) throws IOException {
+		AutoCloseable archive = archives.get(root);
+		if (archive != null) return archive;
+
+		final Path path = roots.get(root);
+		archive = MappedZip.open(path);
+		if (archive == null)
+			archive = new JarFile(path.toFile());
+
+		if (!archives.compareAndSet(root, null, archive)) {
+			closeQuietly(archive); // Another thread beat us to it.
+			archive = archives.get(root);
+		}
+
+		return archive;
+	}
+
+	/**
+	 * Closes any archives that were opened to read classes.
+	 */
+	@Override
+	public void close() {
+		for (int i = 0; i < archives.length(); i++) {
+			final AutoCloseable archive = archives.getAndSet(i, null);
+			if (archive != null)
+				closeQuietly(archive);
+		}
+	}
+
+	private static void closeQuietly(AutoCloseable closeable) {
+		try {
+			closeable.close();
+		} catch (Exception e) {
+			// Nothing we can do.
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ClassIndex[" + entries + " classes in " + roots.size() + " inputs]";
+	}
+
+	/*
+	 * Building
+	 */
+
+	private static final class Entry {
+
+		private final String name;
+		private final int method;
+		private final int localOffset;
+		private final int compressedSize;
+		private final int size;
+
+		Entry(String name, int method, int localOffset, int compressedSize, int size) {
+			this.name = name;
+			this.method = method;
+			this.localOffset = localOffset;
+			this.compressedSize = compressedSize;
+			this.size = size;
+		}
+	}
+
+	private static List<List<Entry>> scan(List<Path> roots) throws IOException {
+		try {
+			return roots.parallelStream().map(root -> {
+				try {
+					return Files.isDirectory(root) ? scanDirectory(root) : scanArchive(root);
+				} catch (IOException e) {
+					throw new UncheckedIOException("Failed to index " + root, e);
+				}
+			}).collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static List<Entry> scanDirectory(Path dir) throws IOException {
+		final List<Entry> ret = new ArrayList<>();
+
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				final String name = dir.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+				if (attrs.isRegularFile() && IClassInput.isClassFile(name))
+					ret.add(new Entry(binaryName(name, 0), DIRECTORY, 0, 0, 0));
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		return ret;
+	}
+
+	private static List<Entry> scanArchive(Path archive) throws IOException {
+		final List<Entry> ret = new ArrayList<>();
+		// Classes in jmods are in a "classes" directory.
+		final String prefix = archive.getFileName().toString().endsWith(".jmod") ? "classes/" : "";
+
+		try (MappedZip zip = MappedZip.open(archive)) {
+			if (zip != null) {
+				zip.forEachRecord((name, method, compressedSize, size, localOffset) -> {
+					if (isIndexed(name, prefix))
+						ret.add(new Entry(binaryName(name, prefix.length()), method, localOffset, compressedSize, size));
+				});
+				return ret;
+			}
+		}
+
+		try (JarFile jar = new JarFile(archive.toFile())) {
+			final Enumeration<JarEntry> entries = jar.entries();
+			while (entries.hasMoreElements()) {
+				final String name = entries.nextElement().getName();
+				if (prefix.isEmpty() && isIndexed(name, prefix))
+					ret.add(new Entry(binaryName(name, 0), JAR_FILE, 0, 0, 0));
+			}
+		}
+
+		return ret;
+	}
+
+	private static boolean isIndexed(String name, String prefix) {
+		// Multi-release jars have other versions of classes in here.
+		return name.startsWith(prefix) && !name.startsWith("META-INF/") && IClassInput.isClassFile(name);
+	}
+
+	private static String binaryName(String file, int start) {
+		return file.substring(start, file.length() - ".class".length()).replace('/', '.');
+	}
+
+	private static byte[] encode(List<Path> roots, List<List<Entry>> scanned) {
+		final Set<String> seen = new HashSet<>();
+		final List<Entry> entries = new ArrayList<>();
+		final List<Integer> entryRoots = new ArrayList<>();
+
+		for (int i = 0; i < scanned.size(); i++)
+			for (Entry entry : scanned.get(i))
+				if (seen.add(entry.name)) {
+					entries.add(entry);
+					entryRoots.add(i);
+				}
+
+		int tableSize = 16;
+		while (tableSize < entries.size() * 2)
+			tableSize <<= 1;
+
+		final ByteArrayOutputStream names = new ByteArrayOutputStream(entries.size() * 32);
+		final int[] table = new int[tableSize];
+		final ByteBuffer records = ByteBuffer.allocate(entries.size() * RECORD_SIZE);
+
+		for (int i = 0; i < entries.size(); i++) {
+			final Entry entry = entries.get(i);
+			final byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+			final int hash = hash(entry.name);
+
+			records.putInt(hash).putInt(names.size()).putInt(name.length).putInt(entryRoots.get(i))
+					.putInt(entry.method).putInt(entry.localOffset).putInt(entry.compressedSize).putInt(entry.size);
+			names.write(name, 0, name.length);
+
+			int slot = hash & (tableSize - 1);
+			while (table[slot] != 0)
+				slot = (slot + 1) & (tableSize - 1);
+			table[slot] = i + 1;
+		}
+
+		final byte[][] rootNames = new byte[roots.size()][];
+		int headerSize = 12;
+		for (int i = 0; i < roots.size(); i++) {
+			rootNames[i] = roots.get(i).toString().getBytes(StandardCharsets.UTF_8);
+			headerSize += 4 + rootNames[i].length + 16;
+		}
+
+		final ByteBuffer ret = ByteBuffer.allocate(headerSize + 8 + tableSize * 4 + records.capacity() + names.size());
+		ret.putInt(MAGIC).putInt(FORMAT).putInt(roots.size());
+
+		for (int i = 0; i < roots.size(); i++) {
+			final long[] stamp = stamp(roots.get(i));
+			ret.putInt(rootNames[i].length).put(rootNames[i]).putLong(stamp[0]).putLong(stamp[1]);
+		}
+
+		ret.putInt(entries.size()).putInt(tableSize);
+		for (int slot : table)
+			ret.putInt(slot);
+		ret.put(records.array());
+		ret.put(names.toByteArray());
+
+		return ret.array();
+	}
+
+	/*
+	 * Loading
+	 */
+
+	/**
+	 * Skips over the header of an encoded index.
+	 * @return A view of the index, positioned just after the header.
+	 */
+	private static ByteBuffer header(ByteBuffer data) {
+		final ByteBuffer view = data.duplicate();
+		view.position(8);
+		final int roots = view.getInt();
+
+		for (int i = 0; i < roots; i++) {
+			final int length = view.getInt();
+			view.position(view.position() + length + 16);
+		}
+
+		return view;
+	}
+
+	private static boolean isUpToDate(ByteBuffer data, List<Path> roots) throws IOException {
+		try {
+			final ByteBuffer view = data.duplicate();
+			if (view.getInt() != MAGIC || view.getInt() != FORMAT || view.getInt() != roots.size())
+				return false;
+
+			for (Path root : roots) {
+				final byte[] name = new byte[view.getInt()];
+				view.get(name);
+
+				if (!root.toString().equals(new String(name, StandardCharsets.UTF_8)))
+					return false;
+
+				final long[] stamp = stamp(root);
+				if (view.getLong() != stamp[0] || view.getLong() != stamp[1])
+					return false;
+			}
+
+			return true;
+		} catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+			return false; // Truncated or otherwise corrupt.
+		}
+	}
+
+	/**
+	 * Works out whether an input has changed since it was indexed.
+	 * For archives, this is their size and modification time.
+	 * For directories, this is the number of directories in it and the latest modification time of any of them, since adding or removing a file updates the modification time of its directory.
+	 * @return The size (or count) and modification time.
+	 */
+	private static long[] stamp(Path root) {
+		final long[] ret = new long[2];
+
+		try {
+			if (!Files.isDirectory(root)) {
+				ret[0] = Files.size(root);
+				ret[1] = Files.getLastModifiedTime(root).toMillis();
+				return ret;
+			}
+
+			Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+					ret[0]++;
+					ret[1] = Math.max(ret[1], attrs.lastModifiedTime().toMillis());
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			ret[0] = -1; // Never matches, so the index is rebuilt (and the problem is reported then).
+		}
+
+		return ret;
+	}
+}
@@ -0,0 +1,66 @@
+package net.enderturret.umldiagram.input;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Predicate;
+
+import net.enderturret.umldiagram.IClass;
+
+/**
+ * An {@link IClassInput} that reads every class file in a directory tree.
+ * @author EnderTurret
+ */
+public final class DirectoryInput implements IClassInput {
+
+	private final Path dir;
+
+	public DirectoryInput(Path dir) {
+		this.dir = dir;
+	}
+
+	@Override
+	public boolean forEach(Predicate<IClass> visitor) throws IOException {
+		final boolean[] result = { true };
+
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (!attrs.isRegularFile() || !IClassInput.isClassFile(file.getFileName().toString()))
+					return FileVisitResult.CONTINUE;
+
+				final byte[] code;
+				try {
+					code = Files.readAllBytes(file);
+				} catch (IOException e) {
+					return visitFileFailed(file, e);
+				}
+
+				if (!visitor.test(new IClass.ASM(code))) {
+					result[0] = false;
+					return FileVisitResult.TERMINATE;
+				}
+
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) {
+				// One unreadable file (or directory) shouldn't stop the rest from being read.
+				System.err.println("Failed to read " + file + ":");
+				exc.printStackTrace();
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		return result[0];
+	}
+
+	@Override
+	public String toString() {
+		return dir.toString();
+	}
+}
@@ -0,0 +1,38 @@
+package net.enderturret.umldiagram.input;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+import net.enderturret.umldiagram.IClass;
+
+/**
+ * Represents somewhere classes can be read from, such as a jar file or a directory.
+ * @author EnderTurret
+ */
+public interface IClassInput {
+
+	/**
+	 * Visits every class in this input, in encounter order.
+	 * Classes are read lazily, so only one class needs to be in memory at a time.
+	 * @param visitor The visitor. Return {@code false} from it to stop visiting.
+	 * @return {@code false} if the visitor stopped early.
+	 * @throws IOException If the input could not be read.
+	 */
+	public boolean forEach(Predicate<IClass> visitor) throws IOException;
+
+	/**
+	 * @param clazz The class.
+	 * @return An input containing only the given class.
+	 */
+	public static IClassInput of(IClass clazz) {
+		return visitor -> visitor.test(clazz);
+	}
+
+	/**
+	 * @param name The name of a file in a jar or directory.
+	 * @return {@code true} if the file is a class file that can be turned into a diagram.
+	 */
+	static boolean isClassFile(String name) {
+		return name.endsWith(".class") && !name.endsWith("module-info.class") && !name.endsWith("package-info.class");
+	}
+}
@@ -0,0 +1,72 @@
+package net.enderturret.umldiagram.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import net.enderturret.umldiagram.IClass;
+import net.enderturret.umldiagram.util.Util;
+
+/**
+ * <p>An {@link IClassInput} that reads every class in a jar file.</p>
+ * <p>The jar is memory-mapped and read with {@link MappedZip} where possible, falling back to {@link JarFile} for jars it can't handle.</p>
+ * @author EnderTurret
+ */
+public final class JarInput implements IClassInput {
+
+	private final Path jar;
+
+	public JarInput(Path jar) {
+		this.jar = jar;
+	}
+
+	@Override
+	public boolean forEach(Predicate<IClass> visitor) throws IOException {
+		try (MappedZip zip = MappedZip.open(jar)) {
+			if (zip != null)
+				return zip.forEach(new MappedZip.EntryVisitor() {
+					@Override
+					public boolean accept(String name) {
+						return IClassInput.isClassFile(name);
+					}
+
+					@Override
+					public boolean visit(String name, byte[] data) {
+						return visitor.test(new IClass.ASM(data));
+					}
+				});
+		}
+
+		return forEachSlow(visitor);
+	}
+
+	private boolean forEachSlow(Predicate<IClass> visitor) throws IOException {
+		try (JarFile file = new JarFile(jar.toFile())) {
+			final Enumeration<JarEntry> entries = file.entries();
+
+			while (entries.hasMoreElements()) {
+				final JarEntry entry = entries.nextElement();
+				if (entry.isDirectory() || !IClassInput.isClassFile(entry.getName())) continue;
+
+				final byte[] code;
+				try (InputStream is = file.getInputStream(entry)) {
+					code = Util.readAllBytes(is, (int) entry.getSize());
+				}
+
+				if (!visitor.test(new IClass.ASM(code)))
+					return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return jar.toString();
+	}
+}
@@ -0,0 +1,185 @@
+package net.enderturret.umldiagram.input;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ProviderNotFoundException;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import net.enderturret.umldiagram.IClass;
+
+/**
+ * <p>An {@link IClassInput} that reads the classes of the running JDK.</p>
+ * <p>
+ * On Java 9 and later, classes are read from the {@code jrt:/} file system (which is backed by the JDK's {@code lib/modules} image).
+ * The bytecode is handed straight to the bytecode source, so none of the classes are loaded, linked or initialized.
+ * The modules are listed in parallel, and the classes of each module are read in parallel while the previous module is being visited,
+ * but classes are always visited in the order the modules were given (or by name, when reading every module), on the calling thread.
+ * </p>
+ * <p>On Java 8, which has no {@code jrt:/} file system, the JDK's {@code rt.jar} is read instead, and the modules are ignored.</p>
+ * @author EnderTurret
+ */
+public final class JrtInput implements IClassInput {
+
+	private final Set<String> modules;
+
+	/**
+	 * @param modules The names of the modules to read, or an empty collection to read every module.
+	 */
+	public JrtInput(Collection<String> modules) {
+		this.modules = Collections.unmodifiableSet(new LinkedHashSet<>(modules));
+	}
+
+	/**
+	 * @return The {@code jrt:/} file system, or {@code null} if this is Java 8.
+	 */
+	private static FileSystem fileSystem() {
+		try {
+			return FileSystems.getFileSystem(URI.create("jrt:/"));
+		} catch (FileSystemNotFoundException | ProviderNotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return The names of every module in the running JDK, or {@code null} if this is Java 8 and there are no modules.
+	 * @throws IOException If the modules could not be listed.
+	 */
+	public static List<String> modules() throws IOException {
+		final FileSystem fs = fileSystem();
+		if (fs == null) return null;
+
+		try (Stream<Path> stream = Files.list(fs.getPath("/modules"))) {
+			return stream.map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * @return {@code true} if the running JDK has modules, or {@code false} if this is Java 8.
+	 */
+	public static boolean hasModules() {
+		return fileSystem() != null;
+	}
+
+	/**
+	 * @param modules The names of some modules.
+	 * @return The ones that aren't in the running JDK. On Java 8, this is always empty, since the modules are ignored anyway.
+	 * @throws IOException If the modules could not be listed.
+	 */
+	public static List<String> missing(Collection<String> modules) throws IOException {
+		final List<String> ret = new ArrayList<>(modules);
+		final List<String> available = modules();
+
+		if (available == null)
+			ret.clear();
+		else
+			ret.removeAll(available);
+
+		return ret;
+	}
+
+	@Override
+	public boolean forEach(Predicate<IClass> visitor) throws IOException {
+		final FileSystem fs = fileSystem();
+
+		if (fs == null) {
+			final Path rt = Paths.get(System.getProperty("java.home"), "lib", "rt.jar");
+			if (!Files.isRegularFile(rt))
+				throw new IOException("Neither the jrt:/ file system nor " + rt + " is available");
+			return new JarInput(rt).forEach(visitor);
+		}
+
+		final List<String> names = new ArrayList<>(modules.isEmpty() ? modules() : modules);
+
+		final List<List<Path>> classes;
+
+		try {
+			classes = names.parallelStream().map(name -> {
+				try {
+					return list(fs.getPath("/modules", name));
+				} catch (IOException e) {
+					throw new UncheckedIOException("Failed to list module " + name, e);
+				}
+			}).collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		if (classes.isEmpty()) return true;
+
+		// Read the next module while the current one is being visited.
+		CompletableFuture<List<byte[]>> next = read(classes.get(0));
+
+		for (int i = 0; i < classes.size(); i++) {
+			final List<byte[]> module;
+
+			try {
+				module = next.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof UncheckedIOException)
+					throw ((UncheckedIOException) e.getCause()).getCause();
+				throw e;
+			}
+
+			next = i + 1 < classes.size() ? read(classes.get(i + 1)) : null;
+
+			for (byte[] code : module)
+				if (!visitor.test(new IClass.ASM(code)))
+					return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reads the classes of a module in parallel, keeping them in order.
+	 */
+	private static CompletableFuture<List<byte[]>> read(List<Path> module) {
+		return CompletableFuture.supplyAsync(() -> module.parallelStream().map(file -> {
+			try {
+				return Files.readAllBytes(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to read " + file, e);
+			}
+		}).collect(Collectors.toList()));
+	}
+
+	private static List<Path> list(Path module) throws IOException {
+		final List<Path> ret = new ArrayList<>();
+
+		Files.walkFileTree(module, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && IClassInput.isClassFile(file.getFileName().toString()))
+					ret.add(file);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		return ret;
+	}
+
+	@Override
+	public String toString() {
+		return modules.isEmpty() ? "jrt:/modules" : "jrt:/modules/{" + String.join(",", modules) + "}";
+	}
+}
@@ -0,0 +1,280 @@
+package net.enderturret.umldiagram.input;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * <p>A minimal, read-only zip reader that works directly on a memory-mapped file.</p>
+ * <p>
+ * Unlike {@link java.util.zip.ZipFile}, this doesn't create an entry object or an input stream per entry.
+ * Stored entries are copied straight out of the mapping, and deflated ones are inflated straight into an array of their exact size.
+ * The buffers needed for inflation are reused between entries.
+ * </p>
+ * <p>Zip64 archives and archives larger than 2 GiB are not supported; {@link #open(Path)} returns {@code null} for those.</p>
+ * <p>This class is not thread-safe.</p>
+ * @author EnderTurret
+ */
+final class MappedZip implements AutoCloseable {
+
+	private static final int EOCD_SIG = 0x06054b50;
+	private static final int CEN_SIG = 0x02014b50;
+	private static final int LOC_SIG = 0x04034b50;
+
+	private static final int EOCD_SIZE = 22;
+	private static final int CEN_SIZE = 46;
+	private static final int LOC_SIZE = 30;
+
+	private final MappedByteBuffer map;
+	// Where the archive actually starts in the file. This is non-zero for things like jmods, which have a small header.
+	private final int base;
+	private final int cenOffset;
+	private final int entries;
+
+	private final Inflater inflater = new Inflater(true);
+	private byte[] staging = new byte[8192];
+
+	private MappedZip(MappedByteBuffer map, int base, int cenOffset, int entries) {
+		this.map = map;
+		this.base = base;
+		this.cenOffset = cenOffset;
+		this.entries = entries;
+	}
+
+	/**
+	 * Maps the given zip file and reads its end of central directory record.
+	 * @param path The zip file.
+	 * @return The zip, or {@code null} if it uses features this reader doesn't support.
+	 * @throws IOException If the file could not be read or is not a zip file.
+	 */
+	static MappedZip open(Path path) throws IOException {
+		final MappedByteBuffer map;
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) return null;
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		map.order(ByteOrder.LITTLE_ENDIAN);
+
+		final int limit = map.limit();
+		final int min = Math.max(0, limit - EOCD_SIZE - 0xFFFF);
+
+		for (int pos = limit - EOCD_SIZE; pos >= min; pos--) {
+			if (map.getInt(pos) != EOCD_SIG) continue;
+
+			final int entries = map.getShort(pos + 10) & 0xFFFF;
+			final long cenSize = map.getInt(pos + 12) & 0xFFFFFFFFL;
+			final long cenOffset = map.getInt(pos + 16) & 0xFFFFFFFFL;
+
+			if (entries == 0xFFFF || cenSize == 0xFFFFFFFFL || cenOffset == 0xFFFFFFFFL)
+				return null; // Zip64.
+
+			final long base = pos - cenSize - cenOffset;
+			if (base < 0)
+				throw new ZipException("Invalid central directory in " + path);
+
+			return new MappedZip(map, (int) base, (int) (base + cenOffset), entries);
+		}
+
+		throw new ZipException("Could not find the end of central directory in " + path);
+	}
+
+	/**
+	 * Visits every file entry in the zip, in central directory order.
+	 * @param visitor The visitor.
+	 * @return {@code false} if the visitor stopped early.
+	 * @throws IOException If an entry could not be read.
+	 */
+	boolean forEach(EntryVisitor visitor) throws IOException {
+		int pos = cenOffset;
+
+		for (int i = 0; i < entries; i++) {
+			if (map.getInt(pos) != CEN_SIG)
+				throw new ZipException("Invalid central directory entry at " + pos);
+
+			final int method = map.getShort(pos + 10) & 0xFFFF;
+			final int compressedSize = map.getInt(pos + 20);
+			final int size = map.getInt(pos + 24);
+			final int nameLength = map.getShort(pos + 28) & 0xFFFF;
+			final int extraLength = map.getShort(pos + 30) & 0xFFFF;
+			final int commentLength = map.getShort(pos + 32) & 0xFFFF;
+			final int localOffset = map.getInt(pos + 42);
+
+			final String name = string(pos + CEN_SIZE, nameLength);
+			final int next = pos + CEN_SIZE + nameLength + extraLength + commentLength;
+
+			if (!name.endsWith("/") && visitor.accept(name)) {
+				final int data = dataOffset(base + localOffset);
+				if (!visitor.visit(name, readData(name, data, method, compressedSize, size)))
+					return false;
+			}
+
+			pos = next;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Visits the central directory record of every file entry in the zip, without reading any of their contents.
+	 * The entries can be read later with {@link #read(String, int, int, int, int)}.
+	 * @param visitor The visitor.
+	 * @throws IOException If the central directory is invalid.
+	 */
+	void forEachRecord(RecordVisitor visitor) throws IOException {
+		int pos = cenOffset;
+
+		for (int i = 0; i < entries; i++) {
+			if (map.getInt(pos) != CEN_SIG)
+				throw new ZipException("Invalid central directory entry at " + pos);
+
+			final int nameLength = map.getShort(pos + 28) & 0xFFFF;
+			final String name = string(pos + CEN_SIZE, nameLength);
+
+			if (!name.endsWith("/"))
+				visitor.visit(name, map.getShort(pos + 10) & 0xFFFF, map.getInt(pos + 20), map.getInt(pos + 24), map.getInt(pos + 42));
+
+			pos += CEN_SIZE + nameLength + (map.getShort(pos + 30) & 0xFFFF) + (map.getShort(pos + 32) & 0xFFFF);
+		}
+	}
+
+	/**
+	 * Reads a single entry, using the values from its central directory record.
+	 * Unlike the rest of this class, this method is thread-safe.
+	 * @param name The name of the entry, for error messages.
+	 * @param localOffset The offset of the entry's local header.
+	 * @param method The compression method.
+	 * @param compressedSize The compressed size.
+	 * @param size The uncompressed size.
+	 * @return The uncompressed contents of the entry.
+	 * @throws IOException If the entry could not be read.
+	 */
+	byte[] read(String name, int localOffset, int method, int compressedSize, int size) throws IOException {
+		final ByteBuffer view = map.duplicate();
+		view.position(dataOffset(base + localOffset));
+
+		if (method == 0)
+			return stored(view, size);
+
+		final byte[] compressed = new byte[compressedSize];
+		view.get(compressed);
+
+		final Inflater inflater = new Inflater(true);
+		try {
+			return inflate(name, method, inflater, compressed, compressedSize, size);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private int dataOffset(int loc) throws ZipException {
+		if (map.getInt(loc) != LOC_SIG)
+			throw new ZipException("Invalid local file header at " + loc);
+
+		return loc + LOC_SIZE + (map.getShort(loc + 26) & 0xFFFF) + (map.getShort(loc + 28) & 0xFFFF);
+	}
+
+	private byte[] readData(String name, int data, int method, int compressedSize, int size) throws IOException {
+		final ByteBuffer view = map.duplicate();
+		view.position(data);
+
+		if (method == 0)
+			return stored(view, size);
+
+		// Java 8's Inflater can only take arrays, so the compressed data has to be copied out of the mapping first.
+		if (staging.length < compressedSize)
+			staging = new byte[Math.max(compressedSize, staging.length * 2)];
+		view.get(staging, 0, compressedSize);
+
+		inflater.reset();
+		return inflate(name, method, inflater, staging, compressedSize, size);
+	}
+
+	private static byte[] stored(ByteBuffer view, int size) {
+		final byte[] ret = new byte[size];
+		view.get(ret);
+		return ret;
+	}
+
+	private static byte[] inflate(String name, int method, Inflater inflater, byte[] compressed, int compressedSize, int size) throws IOException {
+		if (method != 8)
+			throw new ZipException("Unsupported compression method " + method + " for " + name);
+
+		final byte[] ret = new byte[size];
+		inflater.setInput(compressed, 0, compressedSize);
+
+		try {
+			int read = 0;
+			while (read < size) {
+				final int n = inflater.inflate(ret, read, size - read);
+				if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+					break;
+				read += n;
+			}
+
+			if (read != size)
+				throw new ZipException("Entry " + name + " is shorter than expected (" + read + " < " + size + ")");
+		} catch (DataFormatException e) {
+			throw new ZipException("Entry " + name + " is corrupt: " + e.getMessage());
+		}
+
+		return ret;
+	}
+
+	private String string(int pos, int length) {
+		final byte[] bytes = new byte[length];
+		final ByteBuffer view = map.duplicate();
+		view.position(pos);
+		view.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void close() {
+		inflater.end();
+	}
+
+	/**
+	 * Receives central directory records from {@link MappedZip#forEachRecord(RecordVisitor)}.
+	 */
+	interface RecordVisitor {
+
+		/**
+		 * @param name The name of the entry.
+		 * @param method The compression method.
+		 * @param compressedSize The compressed size.
+		 * @param size The uncompressed size.
+		 * @param localOffset The offset of the entry's local header, relative to the start of the archive.
+		 */
+		void visit(String name, int method, int compressedSize, int size, int localOffset);
+	}
+
+	/**
+	 * Receives entries from {@link MappedZip#forEach(EntryVisitor)}.
+	 */
+	interface EntryVisitor {
+
+		/**
+		 * @param name The name of the entry.
+		 * @return {@code true} if the entry should be read and passed to {@link #visit(String, byte[])}.
+		 */
+		boolean accept(String name);
+
+		/**
+		 * @param name The name of the entry.
+		 * @param data The uncompressed contents of the entry.
+		 * @return {@code false} to stop visiting.
+		 * @throws IOException If something goes wrong.
+		 */
+		boolean visit(String name, byte[] data) throws IOException;
+	}
+}
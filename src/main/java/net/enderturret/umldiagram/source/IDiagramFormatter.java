@@ -1,5 +1,7 @@
 package net.enderturret.umldiagram.source;
 
+import net.enderturret.umldiagram.source.data.LineBuilder;
+
 /**
  * Allows formatting parts of UML diagrams, allowing you to add colors or other stylistic things.
  * @author EnderTurret
@@ -20,4 +22,15 @@ public interface IDiagramFormatter {
 	public default String formatParameter(String name) { return name; }
 
 	public default String formatFieldName(String name) { return name; }
+
+	// These write the formatted text straight into a line, measuring its width at the same time.
+	// By default they use the format methods above, but formatters can override them to avoid building intermediate strings.
+
+	public default void appendAccess(LineBuilder line, Access access) { line.append(formatAccess(access), 1); }
+	public default void appendType(LineBuilder line, String type) { line.append(formatType(type), type.length()); }
+
+	public default void appendMethodName(LineBuilder line, String name) { line.append(formatMethodName(name), name.length()); }
+	public default void appendParameter(LineBuilder line, String name) { line.append(formatParameter(name), name.length()); }
+
+	public default void appendFieldName(LineBuilder line, String name) { line.append(formatFieldName(name), name.length()); }
 }
\ No newline at end of file
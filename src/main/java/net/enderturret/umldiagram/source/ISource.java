@@ -1,10 +1,11 @@
 package net.enderturret.umldiagram.source;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
 
+import net.enderturret.umldiagram.source.data.ClassData;
 import net.enderturret.umldiagram.source.data.FieldData;
 import net.enderturret.umldiagram.source.data.Line;
 import net.enderturret.umldiagram.source.data.MethodData;
@@ -44,36 +45,23 @@ public interface ISource<T> {
 	 * @param settings The settings.
 	 */
 	public default void generate(List<Line> lines, T source, Settings settings) {
+		extract(source, settings).render(lines, settings);
+	}
+
+	/**
+	 * Gathers everything a diagram needs from the source, so it can be {@link ClassData#render(List, Settings) rendered} as many times as needed.
+	 * @param source The source data.
+	 * @param settings The settings. The formatter and whether to sort are ignored.
+	 * @return The class data.
+	 */
+	public default ClassData extract(T source, Settings settings) {
 		final List<FieldData> fields = new ArrayList<>(2);
 		final List<MethodData> constructors = new ArrayList<>(1);
 		final List<MethodData> methods = new ArrayList<>(3);
 
 		final String className = generate(fields, constructors, methods, source, settings);
 
-		final IDiagramFormatter f = settings.formatter();
-
-		if (settings.sort()) {
-			Collections.sort(fields);
-			Collections.sort(constructors);
-			Collections.sort(methods);
-		}
-
-		lines.add(new Line(f.formatClassName(className), className.length()));
-
-		if (!fields.isEmpty())
-			lines.add(SEPARATOR_LINE);
-
-		for (FieldData field : fields)
-			lines.add(new Line(" " + field.toFormattedString(f) + " ", field.toString().length() + 2));
-
-		if (!constructors.isEmpty() || !methods.isEmpty())
-			lines.add(SEPARATOR_LINE);
-
-		for (MethodData ctor : constructors)
-			lines.add(new Line(" " + ctor.toFormattedString(f) + " ", ctor.toString().length() + 2));
-
-		for (MethodData m : methods)
-			lines.add(new Line(" " + m.toFormattedString(f) + " ", m.toString().length() + 2));
+		return new ClassData(className, fields, constructors, methods);
 	}
 
 	/**
@@ -86,4 +74,14 @@ public interface ISource<T> {
 	 * @return The class name.
 	 */
 	public String generate(List<FieldData> fields, List<MethodData> constructors, List<MethodData> methods, T source, Settings settings);
+
+	/**
+	 * <p>Finds the classes the source's class is related to: its superclass and interfaces, and the types of its (visible) fields.</p>
+	 * <p>Classes are reported by their binary names, like {@code java.util.Map$Entry}, and may be reported more than once.</p>
+	 * @param source The source data.
+	 * @param settings The settings. Only the visibility and whether to show generics (which decides if type arguments count as associations) are used.
+	 * @param visitor Receives each relationship and the binary name of the class on the other end.
+	 * @return The binary name of the class.
+	 */
+	public String relations(T source, Settings settings, BiConsumer<Relation, String> visitor);
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package net.enderturret.umldiagram.source;
+
+/**
+ * Represents the kinds of relationships between classes that are shown in class graphs.
+ * @author EnderTurret
+ * @see ISource#relations(Object, net.enderturret.umldiagram.util.Settings, java.util.function.BiConsumer)
+ */
+public enum Relation {
+
+	/**
+	 * The class extends the other class, or the interface extends the other interface.
+	 */
+	INHERITANCE("extends"),
+	/**
+	 * The class implements the other interface.
+	 */
+	IMPLEMENTATION("implements"),
+	/**
+	 * The class has a field whose type mentions the other class.
+	 */
+	ASSOCIATION("has");
+
+	private final String keyword;
+
+	private Relation(String keyword) {
+		this.keyword = keyword;
+	}
+
+	/**
+	 * @return A short description of this relationship, like {@code extends}.
+	 */
+	public String keyword() {
+		return keyword;
+	}
+}
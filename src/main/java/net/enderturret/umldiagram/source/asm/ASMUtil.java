@@ -3,215 +3,433 @@ package net.enderturret.umldiagram.source.asm;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Objects;
 
 import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.Type;
 import org.objectweb.asm.signature.SignatureReader;
-import org.objectweb.asm.util.TraceSignatureVisitor;
+import org.objectweb.asm.signature.SignatureVisitor;
 
-import net.enderturret.umldiagram.UMLDiagrams;
 import net.enderturret.umldiagram.source.data.ParameterData;
-import net.enderturret.umldiagram.util.Pair;
-import net.enderturret.umldiagram.util.Util;
+import net.enderturret.umldiagram.util.LruCache;
+import net.enderturret.umldiagram.util.StringPool;
 
 final class ASMUtil {
 
+	/**
+	 * @param className A class name, in either internal ({@code java/util/Map$Entry}) or binary ({@code java.util.Map$Entry}) form.
+	 * @param useFqn Whether to keep the fully qualified name.
+	 * @return The simple name of the class, such as {@code Entry}.
+	 */
 	static String simple(String className, boolean useFqn) {
-		if (!useFqn) {
-			int idx = className.lastIndexOf('$');
-			if (idx != -1) {
-				className = className.substring(idx + 1);
+		if (useFqn) return className;
+		return simple(className, 0, className.length());
+	}
+
+	/**
+	 * Computes the simple name of the class name in {@code str} between {@code start} and {@code end}.
+	 */
+	private static String simple(String str, int start, int end) {
+		int from = start;
+
+		for (int i = end - 1; i >= start; i--) {
+			final char c = str.charAt(i);
+			if (c == '$') {
+				from = i + 1;
+
 				// Local classes have a name like 1FontLazyValue. No idea why.
-				final Matcher m = LOCAL_CLASS.matcher(className);
-				if (m.matches())
-					return m.group(1);
-			} else {
-				idx = className.lastIndexOf('.');
-				if (idx != -1)
-					className = className.substring(idx + 1);
+				int digits = from;
+				while (digits < end && str.charAt(digits) >= '0' && str.charAt(digits) <= '9')
+					digits++;
+				if (digits != from && digits < end && Character.isJavaIdentifierStart(str.charAt(digits)))
+					from = digits;
+
+				break;
+			}
+			if (c == '/' || c == '.') {
+				from = i + 1;
+				break;
 			}
 		}
 
-		return className;
+		return from == start && end == str.length() ? str.substring(start) : str.substring(from, end);
+	}
+
+	/**
+	 * @param str A freshly built type or member name.
+	 * @return The shared copy of it.
+	 * @see StringPool#share(String)
+	 */
+	static String intern(String str) {
+		return StringPool.share(str);
 	}
 
-	static String parse(Type type) {
-		if (type.getSort() == Type.ARRAY)
-			return parse(type.getElementType()) + Util.repeat("[]", type.getDimensions());
-		return simple(type.getClassName(), false);
+	/**
+	 * Member descriptors and signatures repeat a lot across classes, so parsed ones are cached.
+	 * Every type name in them is {@link #intern(String) interned}, since the same names also repeat across different descriptors.
+	 * This is safe because {@link Signature Signatures} are never modified after {@link #parse(String, String)} returns them.
+	 */
+	static final LruCache<SignatureKey, Signature> SIGNATURE_CACHE = new LruCache<>(8192, 4 * Runtime.getRuntime().availableProcessors());
+
+	static Signature parse(String descriptor, String signature) {
+		return SIGNATURE_CACHE.get(new SignatureKey(descriptor, signature), key -> parse0(key.descriptor, key.signature));
 	}
 
-	private static final Pattern QUALIFIED_NAME_PATTERN = Pattern.compile("\\w+\\.(\\w+\\$)*");
+	private static Signature parse0(String descriptor, String signature) {
+		final Signature desc = parseDescriptor(descriptor);
+		if (signature == null) return desc;
 
-	// Stuff like 1FontLazyValue
-	private static final Pattern LOCAL_CLASS = Pattern.compile("\\d+([a-zA-Z_][a-zA-Z0-9_]*)");
+		if (!desc.method) {
+			final StringBuilder sb = new StringBuilder();
+			new SignatureReader(signature).acceptType(new TypePrinter(sb));
+			return new Signature("", new String[] { intern(sb.toString()) }, null);
+		}
 
-	// "MyList<E>.MyObject"   "Map<K, V>.Entry<K, V>"
-	//  ^^^^^^^^^^             ^^^^^^^^^^
-	private static final Pattern INSTANCE_INNER_CLASS = Pattern.compile("\\w+<[\\w, ]+>\\.");
+		final MemberPrinter printer = new MemberPrinter();
+		new SignatureReader(signature).accept(printer);
+		String[] decl = printer.parameters();
 
-	static String removeFqn(String desc) {
-		return QUALIFIED_NAME_PATTERN.matcher(desc).replaceAll("");
+		// javac emits signatures for enum and inner class constructors that do not include the name and ordinal (or outer instance) parameters.
+		if (decl.length < desc.declaration.length) {
+			final int diff = desc.declaration.length - decl.length;
+			final String[] full = Arrays.copyOf(desc.declaration, desc.declaration.length);
+			System.arraycopy(decl, 0, full, diff, decl.length);
+			decl = full;
+		}
+
+		return new Signature(printer.generic(), decl, printer.returnType());
 	}
 
-	static Signature parse(String descriptor, String signature, String parentClassName) {
-		final Signature desc = new Signature(Type.getType(descriptor));
-
-		if (signature != null) {
-			Signature sig = parse(signature, parentClassName);
-
-			// Hack for javac emitting unnecessary signatures for enums that do not include the ordinal or name parameters, along with inner classes.
-			if (sig.declaration.length < desc.declaration.length) {
-				final int diff = desc.declaration.length - sig.declaration.length;
-				final String[] decl = new String[desc.declaration.length];
-				for (int i = 0; i < desc.declaration.length; i++)
-					if (i < diff)
-						decl[i] = desc.declaration[i];
-					else
-						decl[i] = sig.declaration[i - diff];
-				sig = new Signature(sig.generic, decl, sig.returnType);
-			}
+	/**
+	 * Parses a class signature.
+	 * @param signature The signature.
+	 * @return The parsed signature. Only {@link Signature#generic()} is meaningful.
+	 */
+	static Signature parseClass(String signature) {
+		final MemberPrinter printer = new MemberPrinter();
+		new SignatureReader(signature).accept(printer);
+		return new Signature(printer.generic(), new String[0], null);
+	}
 
-			// Hack for TraceSignatureVisitor dropping array information sometimes.
-			for (int i = 0; i < desc.declaration.length; i++)
-				if (desc.declaration[i].endsWith("[]") && !sig.declaration[i].endsWith("[]"))
-					sig.declaration[i] += "[]";
+	/**
+	 * Parses a field or method descriptor without any help from ASM, since this is by far the most common case.
+	 * @param descriptor The descriptor.
+	 * @return The parsed descriptor.
+	 */
+	static Signature parseDescriptor(String descriptor) {
+		final StringBuilder sb = new StringBuilder();
+
+		if (descriptor.charAt(0) != '(') {
+			descriptorType(descriptor, 0, sb);
+			return new Signature("", new String[] { intern(sb.toString()) }, null);
+		}
 
-			// Hack for TraceSignatureVisitor sometimes not reading the return type.
-			if (sig.method && sig.returnType.isEmpty() && desc.method && !desc.returnType.isEmpty())
-				return new Signature(sig.generic, sig.declaration, desc.returnType);
+		final List<String> params = new ArrayList<>(4);
+		int pos = 1;
 
-			return sig;
+		while (descriptor.charAt(pos) != ')') {
+			pos = descriptorType(descriptor, pos, sb);
+			params.add(intern(sb.toString()));
+			sb.setLength(0);
 		}
 
-		return desc;
+		descriptorType(descriptor, pos + 1, sb);
+
+		return new Signature("", params.toArray(new String[0]), intern(sb.toString()));
 	}
 
-	static Signature parse(String signature, String parentClassName) {
-		final TraceSignatureVisitor tsv = new TraceSignatureVisitor(Opcodes.ASM9);
-		new SignatureReader(signature).accept(tsv);
+	/**
+	 * Appends the simple name of the type starting at {@code pos} in {@code descriptor}.
+	 * @return The position just after the type.
+	 */
+	private static int descriptorType(String descriptor, int pos, StringBuilder sb) {
+		int dims = 0;
+		while (descriptor.charAt(pos) == '[') {
+			dims++;
+			pos++;
+		}
+
+		final char c = descriptor.charAt(pos);
+
+		if (c == 'L') {
+			final int end = descriptor.indexOf(';', pos);
+			sb.append(simple(descriptor, pos + 1, end));
+			pos = end + 1;
+		} else {
+			sb.append(baseType(c));
+			pos++;
+		}
+
+		for (int i = 0; i < dims; i++)
+			sb.append("[]");
 
-		return new Signature(tsv, signature, parentClassName);
+		return pos;
 	}
 
-	static String[] splitParams(String input) {
-		final List<String> params = new ArrayList<>(2);
-
-		int lastSplitEnd = 0;
-		int genericDepth = 0;
-		boolean seenComma = false;
-
-		for (int i = 0; i < input.length(); i++) {
-			final int cp = input.codePointAt(i);
-			if (cp == '>' && genericDepth > 0)
-				genericDepth--;
-			else if (cp == '<')
-				genericDepth++;
-			else if (cp == ',' && genericDepth == 0)
-				seenComma = true;
-			else if (cp == ' ' && seenComma) {
-				params.add(input.substring(lastSplitEnd, i - 1));
-				lastSplitEnd = i + 1;
-				seenComma = false;
+	private static String baseType(char descriptor) {
+		switch (descriptor) {
+			case 'Z': return "boolean";
+			case 'C': return "char";
+			case 'B': return "byte";
+			case 'S': return "short";
+			case 'I': return "int";
+			case 'F': return "float";
+			case 'J': return "long";
+			case 'D': return "double";
+			case 'V': return "void";
+			default: throw new IllegalArgumentException("Invalid base type: " + descriptor);
+		}
+	}
+
+	/**
+	 * A {@link SignatureVisitor} that ignores everything.
+	 */
+	private static final SignatureVisitor IGNORE = new SignatureVisitor(Opcodes.ASM9) {};
+
+	/**
+	 * <p>Prints a single type signature, using simple class names.</p>
+	 * <p>
+	 * This writes straight into the given {@link StringBuilder}, and type arguments are printed by child printers writing into the same builder.
+	 * Types of instance inner classes, like {@code Map<K, V>.Entry}, are printed as just the inner class ({@code Entry}).
+	 * </p>
+	 */
+	private static final class TypePrinter extends SignatureVisitor {
+
+		private final StringBuilder sb;
+
+		// If this type turns out to be a plain Object, everything after this is replaced with objectReplacement.
+		// This is used to turn "? extends Object" into "?", and to drop "extends Object" from type parameters.
+		private final int objectStart;
+		private final String objectReplacement;
+
+		private int arrayDims;
+		private int classStart;
+		private boolean object;
+		private boolean hasArguments;
+
+		TypePrinter(StringBuilder sb) {
+			this(sb, -1, null);
+		}
+
+		TypePrinter(StringBuilder sb, int objectStart, String objectReplacement) {
+			super(Opcodes.ASM9);
+			this.sb = sb;
+			this.objectStart = objectStart;
+			this.objectReplacement = objectReplacement;
+		}
+
+		@Override
+		public void visitBaseType(char descriptor) {
+			sb.append(baseType(descriptor));
+			endType();
+		}
+
+		@Override
+		public void visitTypeVariable(String name) {
+			sb.append(name);
+			endType();
+		}
+
+		@Override
+		public SignatureVisitor visitArrayType() {
+			arrayDims++;
+			return this;
+		}
+
+		@Override
+		public void visitClassType(String name) {
+			classStart = sb.length();
+			object = arrayDims == 0 && "java/lang/Object".equals(name);
+			sb.append(simple(name, 0, name.length()));
+		}
+
+		@Override
+		public void visitInnerClassType(String name) {
+			// "Map<K, V>.Entry" is just "Entry".
+			sb.setLength(classStart);
+			object = false;
+			hasArguments = false;
+			sb.append(simple(name, 0, name.length()));
+		}
+
+		@Override
+		public void visitTypeArgument() {
+			startArgument();
+			sb.append('?');
+		}
+
+		@Override
+		public SignatureVisitor visitTypeArgument(char wildcard) {
+			startArgument();
+
+			if (wildcard == EXTENDS) {
+				final int start = sb.length();
+				sb.append("? extends ");
+				return new TypePrinter(sb, start, "?");
 			}
+
+			if (wildcard == SUPER)
+				sb.append("? super ");
+
+			return new TypePrinter(sb);
+		}
+
+		private void startArgument() {
+			object = false;
+			sb.append(hasArguments ? ", " : "<");
+			hasArguments = true;
 		}
 
-		params.add(input.substring(lastSplitEnd, input.length()));
+		@Override
+		public void visitEnd() {
+			if (hasArguments)
+				sb.append('>');
+
+			if (object && objectStart != -1) {
+				sb.setLength(objectStart);
+				sb.append(objectReplacement);
+				return;
+			}
+
+			endType();
+		}
 
-		return params.toArray(new String[0]);
+		private void endType() {
+			for (int i = 0; i < arrayDims; i++)
+				sb.append("[]");
+		}
 	}
 
-	public static class Signature {
+	/**
+	 * Prints the type parameters, parameters and return type of a method signature, or the type parameters of a class signature.
+	 */
+	private static final class MemberPrinter extends SignatureVisitor {
 
-		private final String generic;
-		private final String[] declaration;
-		private final String returnType;
-		private final boolean method;
+		private final StringBuilder generic = new StringBuilder();
+		private final List<StringBuilder> params = new ArrayList<>(4);
+		private StringBuilder returnType;
 
-		private Signature(String generic, String[] declaration, String returnType) {
-			this.generic = generic;
-			this.declaration = declaration;
-			this.returnType = returnType;
-			method = returnType != null;
+		private int boundStart;
+		private int bounds;
+
+		MemberPrinter() {
+			super(Opcodes.ASM9);
 		}
 
-		private Signature(TraceSignatureVisitor tsv, String signature, String parentClassName) {
-			final Pair<String, String[]> declaration = cleanDeclaration(tsv.getDeclaration(), parentClassName);
-			generic = declaration.left();
-			this.declaration = declaration.right();
-
-			String ret = tsv.getReturnType();
-			if (ret != null) {
-				ret = removeFqn(ret);
-				// Sometimes instead of Object[] TraceSignatureVisitor will just output [].
-				// I suspect this is normally to truncate <T extends Object> to just <T>, but it doesn't work in this context.
-				if ("[]".equals(ret))
-					ret = "Object[]";
-				else
-					ret = INSTANCE_INNER_CLASS.matcher(ret).replaceAll("");
-
-				returnType = ret;
-				method = true;
-			} else {
-				returnType = null;
-				method = false;
-			}
+		@Override
+		public void visitFormalTypeParameter(String name) {
+			if (generic.length() != 0)
+				generic.append(", ");
+			generic.append(name);
+			boundStart = generic.length();
+			bounds = 0;
 		}
 
-		private Signature(Type type) {
-			generic = "";
-			method = type.getSort() == Type.METHOD;
-			if (!method)
-				declaration = new String[] { parse(type) };
+		@Override
+		public SignatureVisitor visitClassBound() {
+			bounds++;
+			generic.append(" extends ");
+			// No need for <T extends Object>.
+			return new TypePrinter(generic, boundStart, "");
+		}
+
+		@Override
+		public SignatureVisitor visitInterfaceBound() {
+			if (bounds == 0)
+				generic.append(" extends ");
+			else if (generic.length() == boundStart) // The class bound was Object, but it's not the only bound.
+				generic.append(" extends Object, ");
 			else
-				declaration = Arrays.stream(type.getArgumentTypes()).map(ASMUtil::parse).toArray(String[]::new);
+				generic.append(", ");
 
-			returnType = method ? parse(type.getReturnType()) : null;
+			bounds++;
+			return new TypePrinter(generic);
 		}
 
-		private static Pair<String,String[]> cleanDeclaration(String decl, String parentClassName) {
-			decl = removeFqn(decl);
-			// Sometimes TraceSignatureVisitor will just output this at the beginning.
-			if (decl.startsWith(" extends "))
-				decl = decl.substring(" extends ".length());
+		@Override
+		public SignatureVisitor visitParameterType() {
+			final StringBuilder sb = new StringBuilder();
+			params.add(sb);
+			return new TypePrinter(sb);
+		}
 
-			String generic = null;
+		@Override
+		public SignatureVisitor visitReturnType() {
+			returnType = new StringBuilder();
+			return new TypePrinter(returnType);
+		}
 
-			// "public <A, B> void get(A a, B b);", "<T extends List<?>> implements Iterable<T>"
-			//         ^^^^^^                        ^^^^^^^^^^^^^^^^^^^
-			if (decl.startsWith("<")) {
-				int idx = decl.indexOf("> ");
-				if (idx == -1)
-					idx = decl.indexOf(">(");
+		@Override
+		public SignatureVisitor visitExceptionType() {
+			return IGNORE;
+		}
 
-				if (idx == -1 && decl.endsWith(">"))
-					idx = decl.length() - 1;
-				else if (idx == -1) idx = decl.indexOf('>');
+		@Override
+		public SignatureVisitor visitSuperclass() {
+			return IGNORE;
+		}
 
-				generic = decl.substring(1, idx);
-				decl = decl.substring(idx + 1);
-			}
+		@Override
+		public SignatureVisitor visitInterface() {
+			return IGNORE;
+		}
+
+		String generic() {
+			return generic.length() == 0 ? null : intern(generic.toString());
+		}
+
+		String[] parameters() {
+			final String[] ret = new String[params.size()];
+			for (int i = 0; i < ret.length; i++)
+				ret[i] = intern(params.get(i).toString());
+			return ret;
+		}
+
+		String returnType() {
+			return returnType == null ? null : intern(returnType.toString());
+		}
+	}
 
-			// Try to replace List<E>.MyObject with just MyObject.
-			decl = INSTANCE_INNER_CLASS.matcher(decl).replaceAll("");
+	/**
+	 * The key for {@link #SIGNATURE_CACHE}. The signature is {@code null} when generics are turned off, so that covers the generics mode too.
+	 */
+	static final class SignatureKey {
 
-			// TraceSignatureVisitor likes to be a bit literal at times.
-			decl = decl.replace("? extends Object", "?");
+		private final String descriptor;
+		private final String signature;
+		private final int hash;
 
-			String[] declaration;
+		SignatureKey(String descriptor, String signature) {
+			this.descriptor = descriptor;
+			this.signature = signature;
+			hash = 31 * descriptor.hashCode() + Objects.hashCode(signature);
+		}
 
-			// public <A, B> void get(A a, B b);
-			//                       ^^^^^^^^^^
-			if (decl.startsWith("(")) {
-				decl = decl.substring(1, decl.length() - 1);
-				declaration = decl.isEmpty() ? new String[0] : splitParams(decl);
-			} else if (decl.isEmpty())
-				declaration = new String[0];
-			else declaration = new String[] { decl };
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof SignatureKey)) return false;
+			final SignatureKey o = (SignatureKey) obj;
+			return hash == o.hash && descriptor.equals(o.descriptor) && Objects.equals(signature, o.signature);
+		}
 
-			return new Pair<>(generic, declaration);
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	public static class Signature {
+
+		private final String generic;
+		private final String[] declaration;
+		private final String returnType;
+		private final boolean method;
+
+		private Signature(String generic, String[] declaration, String returnType) {
+			this.generic = generic;
+			this.declaration = declaration;
+			this.returnType = returnType;
+			method = returnType != null;
 		}
 
 		public String generic() {
@@ -237,4 +455,4 @@ final class ASMUtil {
 			return generic + "(" + String.join(", ", declaration) + "): " + returnType;
 		}
 	}
-}
\ No newline at end of file
+}
@@ -1,12 +1,15 @@
 package net.enderturret.umldiagram.source.asm;
 
 import java.util.List;
+import java.util.function.BiConsumer;
 
 import org.objectweb.asm.ClassReader;
 
 import net.enderturret.umldiagram.source.ISource;
+import net.enderturret.umldiagram.source.Relation;
 import net.enderturret.umldiagram.source.data.FieldData;
 import net.enderturret.umldiagram.source.data.MethodData;
+import net.enderturret.umldiagram.util.LruCache;
 import net.enderturret.umldiagram.util.Settings;
 
 /**
@@ -23,4 +26,18 @@ public enum BytecodeSource implements ISource<byte[]> {
 		new ClassReader(source).accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
 		return visitor.className();
 	}
+
+	@Override
+	public String relations(byte[] source, Settings settings, BiConsumer<Relation, String> visitor) {
+		final RelationCollector collector = new RelationCollector(settings, visitor);
+		new ClassReader(source).accept(collector, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return collector.className();
+	}
+
+	/**
+	 * @return The cache of parsed member descriptors and signatures, shared by every thread. Mostly useful for its hit and miss counts.
+	 */
+	public static LruCache<?, ?> signatureCache() {
+		return ASMUtil.SIGNATURE_CACHE;
+	}
 }
\ No newline at end of file
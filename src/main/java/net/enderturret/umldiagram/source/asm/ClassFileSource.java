@@ -0,0 +1,225 @@
+package net.enderturret.umldiagram.source.asm;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import org.objectweb.asm.Opcodes;
+
+import net.enderturret.umldiagram.source.Access;
+import net.enderturret.umldiagram.source.ISource;
+import net.enderturret.umldiagram.source.Relation;
+import net.enderturret.umldiagram.source.asm.ASMUtil.Signature;
+import net.enderturret.umldiagram.source.data.FieldData;
+import net.enderturret.umldiagram.source.data.MethodData;
+import net.enderturret.umldiagram.source.data.ParameterData;
+import net.enderturret.umldiagram.util.Settings;
+
+/**
+ * <p>A UML diagram generator source that reads the bytecode of a class directly, instead of going through ASM's {@link org.objectweb.asm.ClassReader ClassReader}.</p>
+ * <p>
+ * Only the parts of the class file that end up in a diagram are looked at: the field and method tables, and their {@code Signature}, {@code Synthetic} and {@code MethodParameters} attributes.
+ * Every other attribute is skipped by its length, and constant pool strings are only decoded when they're actually needed.
+ * The result is exactly the same as {@link BytecodeSource}.
+ * </p>
+ * @author EnderTurret
+ * @see Settings#bytecodeSource(ISource)
+ */
+public enum ClassFileSource implements ISource<byte[]> {
+
+	INSTANCE;
+
+	private static final int MAGIC = 0xCAFEBABE;
+
+	@Override
+	public String generate(List<FieldData> fields, List<MethodData> constructors, List<MethodData> methods, byte[] source, Settings settings) {
+		return new Reader(source).read(fields, constructors, methods, settings);
+	}
+
+	@Override
+	public String relations(byte[] source, Settings settings, BiConsumer<Relation, String> visitor) {
+		// Relationships don't need any member strings formatted, so ASM is already about as fast as it gets.
+		return BytecodeSource.INSTANCE.relations(source, settings, visitor);
+	}
+
+	/**
+	 * Reads a single class file. See chapter 4 of the JVM specification for the format.
+	 */
+	private static final class Reader {
+
+		private final byte[] b;
+		// Where each constant pool entry starts (after its tag), by index.
+		private final int[] constants;
+		// The decoded Utf8 constants, by index, filled in as they're used.
+		private final String[] strings;
+		// Where the access flags of the class are.
+		private final int header;
+
+		Reader(byte[] b) {
+			this.b = b;
+
+			if (b.length < 10 || readInt(0) != MAGIC)
+				throw new IllegalArgumentException("Not a class file");
+
+			final int count = readUnsignedShort(8);
+			constants = new int[count];
+			strings = new String[count];
+
+			int pos = 10;
+
+			for (int i = 1; i < count; i++) {
+				constants[i] = pos + 1;
+
+				switch (b[pos]) {
+					case 1: pos += 3 + readUnsignedShort(pos + 1); break; // Utf8
+					case 7: case 8: case 16: case 19: case 20: pos += 3; break; // Class, String, MethodType, Module, Package
+					case 15: pos += 4; break; // MethodHandle
+					case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18: pos += 5; break; // Integer, Float, the refs, NameAndType, (Invoke)Dynamic
+					case 5: case 6: pos += 9; i++; break; // Long and Double take up two entries.
+					default: throw new IllegalArgumentException("Invalid constant pool tag " + b[pos] + " at " + pos);
+				}
+			}
+
+			header = pos;
+		}
+
+		String read(List<FieldData> fields, List<MethodData> constructors, List<MethodData> methods, Settings settings) {
+			final String binaryName = utf8(readUnsignedShort(constants[readUnsignedShort(header + 2)])).replace('/', '.');
+			final String constructorName = ASMUtil.intern(ASMUtil.simple(binaryName, false));
+
+			// Skip the access flags, this class, the superclass and the interfaces.
+			int pos = header + 8 + readUnsignedShort(header + 6) * 2;
+
+			final int fieldCount = readUnsignedShort(pos);
+			pos += 2;
+
+			for (int i = 0; i < fieldCount; i++) {
+				int access = readUnsignedShort(pos);
+				final String name = utf8(readUnsignedShort(pos + 2));
+				final String descriptor = utf8(readUnsignedShort(pos + 4));
+				String signature = null;
+
+				final int attributes = readUnsignedShort(pos + 6);
+				pos += 8;
+
+				for (int j = 0; j < attributes; j++) {
+					final String attribute = utf8(readUnsignedShort(pos));
+					if ("Signature".equals(attribute))
+						signature = utf8(readUnsignedShort(pos + 6));
+					else if ("Synthetic".equals(attribute))
+						access |= Opcodes.ACC_SYNTHETIC;
+					pos += 6 + readInt(pos + 2);
+				}
+
+				if ((access & Opcodes.ACC_SYNTHETIC) != 0) continue;
+
+				final Access vis = Access.forModifiers(access);
+				if (settings.isVisible(vis))
+					fields.add(new FieldData(ASMUtil.intern(name), ASMUtil.parse(descriptor, signature).declaration()[0], vis));
+			}
+
+			final int methodCount = readUnsignedShort(pos);
+			pos += 2;
+
+			for (int i = 0; i < methodCount; i++) {
+				int access = readUnsignedShort(pos);
+				final int nameIndex = readUnsignedShort(pos + 2);
+				final int descriptorIndex = readUnsignedShort(pos + 4);
+				int signatureIndex = 0;
+				int parameters = 0;
+
+				final int attributes = readUnsignedShort(pos + 6);
+				pos += 8;
+
+				for (int j = 0; j < attributes; j++) {
+					final String attribute = utf8(readUnsignedShort(pos));
+					if ("Signature".equals(attribute))
+						signatureIndex = readUnsignedShort(pos + 6);
+					else if ("MethodParameters".equals(attribute))
+						parameters = pos + 6;
+					else if ("Synthetic".equals(attribute))
+						access |= Opcodes.ACC_SYNTHETIC;
+					pos += 6 + readInt(pos + 2);
+				}
+
+				if ((access & Opcodes.ACC_SYNTHETIC) != 0) continue;
+
+				final Access vis = Access.forModifiers(access);
+				if (!settings.isVisible(vis)) continue;
+
+				final String name = utf8(nameIndex);
+				if (name.contains("lambda$") || "<clinit>".equals(name)) continue;
+
+				final String signature = settings.showGenerics() && signatureIndex != 0 ? utf8(signatureIndex) : null;
+				final Signature sig = ASMUtil.parse(utf8(descriptorIndex), signature);
+				final ParameterData[] params = sig.toParameters();
+
+				if (parameters != 0) {
+					final int count = Math.min(b[parameters] & 0xFF, params.length);
+					for (int j = 0; j < count; j++) {
+						final int paramName = readUnsignedShort(parameters + 1 + j * 4);
+						if (paramName != 0)
+							params[j] = new ParameterData(ASMUtil.intern(utf8(paramName)), params[j].type());
+					}
+				}
+
+				if ("<init>".equals(name))
+					constructors.add(new MethodData(constructorName, sig.returnType(), vis, true, params));
+				else
+					methods.add(new MethodData(ASMUtil.intern(name), sig.returnType(), vis, false, params));
+			}
+
+			String className = ASMUtil.simple(binaryName, settings.useFqn());
+
+			final int attributes = readUnsignedShort(pos);
+			pos += 2;
+
+			for (int i = 0; i < attributes; i++) {
+				if ("Signature".equals(utf8(readUnsignedShort(pos)))) {
+					final Signature sig = ASMUtil.parseClass(utf8(readUnsignedShort(pos + 6)));
+					if (sig.generic() != null)
+						className += "<" + sig.generic() + ">";
+					break;
+				}
+				pos += 6 + readInt(pos + 2);
+			}
+
+			return ASMUtil.intern(className);
+		}
+
+		private int readUnsignedShort(int pos) {
+			return ((b[pos] & 0xFF) << 8) | (b[pos + 1] & 0xFF);
+		}
+
+		private int readInt(int pos) {
+			return ((b[pos] & 0xFF) << 24) | ((b[pos + 1] & 0xFF) << 16) | ((b[pos + 2] & 0xFF) << 8) | (b[pos + 3] & 0xFF);
+		}
+
+		/**
+		 * Decodes the modified UTF-8 constant at the given index, remembering the result.
+		 */
+		private String utf8(int index) {
+			String ret = strings[index];
+			if (ret != null) return ret;
+
+			final int start = constants[index] + 2;
+			final int end = start + readUnsignedShort(constants[index]);
+			final char[] chars = new char[end - start];
+			int length = 0;
+
+			for (int pos = start; pos < end; ) {
+				final int c = b[pos++] & 0xFF;
+
+				if (c < 0x80)
+					chars[length++] = (char) c;
+				else if ((c & 0xE0) == 0xC0)
+					chars[length++] = (char) (((c & 0x1F) << 6) | (b[pos++] & 0x3F));
+				else {
+					chars[length++] = (char) (((c & 0x0F) << 12) | ((b[pos] & 0x3F) << 6) | (b[pos + 1] & 0x3F));
+					pos += 2;
+				}
+			}
+
+			return strings[index] = new String(chars, 0, length);
+		}
+	}
+}
@@ -25,7 +25,7 @@ final class ParameterCollector extends MethodVisitor {
 	@Override
 	public void visitParameter(String name, int access) {
 		if (name != null)
-			data.params()[idx] = new ParameterData(name, data.params()[idx].type());
+			data.params()[idx] = new ParameterData(ASMUtil.intern(name), data.params()[idx].type());
 		idx++;
 	}
 
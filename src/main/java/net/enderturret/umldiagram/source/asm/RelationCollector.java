@@ -0,0 +1,94 @@
+package net.enderturret.umldiagram.source.asm;
+
+import java.util.function.BiConsumer;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+
+import net.enderturret.umldiagram.source.Access;
+import net.enderturret.umldiagram.source.Relation;
+import net.enderturret.umldiagram.util.Settings;
+
+/**
+ * Collects the superclass, interfaces and field types of a class, without formatting anything.
+ * Methods are skipped entirely.
+ */
+final class RelationCollector extends ClassVisitor {
+
+	private final Settings settings;
+	private final BiConsumer<Relation, String> visitor;
+
+	private String className;
+
+	RelationCollector(Settings settings, BiConsumer<Relation, String> visitor) {
+		super(Opcodes.ASM9);
+		this.settings = settings;
+		this.visitor = visitor;
+	}
+
+	public String className() {
+		return className;
+	}
+
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+		className = name.replace('/', '.');
+
+		final boolean isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
+
+		// Interfaces have Object as their superclass in bytecode, but not as far as reflection is concerned.
+		if (superName != null && !isInterface)
+			visitor.accept(Relation.INHERITANCE, superName.replace('/', '.'));
+
+		// Interfaces "implementing" other interfaces are really extending them.
+		final Relation relation = isInterface ? Relation.INHERITANCE : Relation.IMPLEMENTATION;
+		if (interfaces != null)
+			for (String i : interfaces)
+				visitor.accept(relation, i.replace('/', '.'));
+	}
+
+	@Override
+	public FieldVisitor visitField(int rawAccess, String name, String descriptor, String signature, Object value) {
+		if ((rawAccess & Opcodes.ACC_SYNTHETIC) != 0 || !settings.isVisible(Access.forModifiers(rawAccess))) return null;
+
+		// Field descriptors are valid type signatures too.
+		new SignatureReader(signature != null && settings.showGenerics() ? signature : descriptor).acceptType(new TypeCollector());
+
+		return null;
+	}
+
+	/**
+	 * Reports every class mentioned in a type signature, including type arguments.
+	 */
+	private final class TypeCollector extends SignatureVisitor {
+
+		private String type;
+
+		TypeCollector() {
+			super(Opcodes.ASM9);
+		}
+
+		@Override
+		public void visitClassType(String name) {
+			type = name;
+		}
+
+		@Override
+		public void visitInnerClassType(String name) {
+			type = type + '$' + name;
+		}
+
+		@Override
+		public void visitEnd() {
+			visitor.accept(Relation.ASSOCIATION, type.replace('/', '.'));
+		}
+
+		@Override
+		public SignatureVisitor visitTypeArgument(char wildcard) {
+			return new TypeCollector();
+		}
+	}
+}
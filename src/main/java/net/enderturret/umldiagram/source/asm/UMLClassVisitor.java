@@ -6,7 +6,6 @@ import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.Type;
 
 import net.enderturret.umldiagram.source.Access;
 import net.enderturret.umldiagram.source.asm.ASMUtil.Signature;
@@ -39,15 +38,17 @@ final class UMLClassVisitor extends ClassVisitor {
 
 	@Override
 	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-		final Type type = Type.getObjectType(name);
-		className = ASMUtil.simple(type.getClassName(), settings.useFqn());
-		constructorName = ASMUtil.simple(type.getClassName(), false);
+		final String binaryName = name.replace('/', '.');
+		className = ASMUtil.simple(binaryName, settings.useFqn());
+		constructorName = ASMUtil.intern(ASMUtil.simple(binaryName, false));
 
 		if (signature != null) {
-			final Signature sig = ASMUtil.parse(signature, className);
+			final Signature sig = ASMUtil.parseClass(signature);
 			if (sig.generic() != null)
 				className += "<" + sig.generic() + ">";
 		}
+
+		className = ASMUtil.intern(className);
 	}
 
 	@Override
@@ -56,7 +57,7 @@ final class UMLClassVisitor extends ClassVisitor {
 
 		final Access access = Access.forModifiers(rawAccess);
 		if (settings.isVisible(access))
-			fields.add(new FieldData(name, ASMUtil.parse(descriptor, signature, className).declaration()[0], access));
+			fields.add(new FieldData(ASMUtil.intern(name), ASMUtil.parse(descriptor, signature).declaration()[0], access));
 
 		return null;
 	}
@@ -70,13 +71,13 @@ final class UMLClassVisitor extends ClassVisitor {
 			final MethodData data;
 			final List<MethodData> add;
 
-			final Signature sig = ASMUtil.parse(descriptor, settings.showGenerics() ? signature : null, className);
+			final Signature sig = ASMUtil.parse(descriptor, settings.showGenerics() ? signature : null);
 
 			if ("<init>".equals(name)) {
 				data = new MethodData(constructorName, sig.returnType(), access, true, sig.toParameters());
 				add = constructors;
 			} else {
-				data = new MethodData(name, sig.returnType(), access, false, sig.toParameters());
+				data = new MethodData(ASMUtil.intern(name), sig.returnType(), access, false, sig.toParameters());
 				add = methods;
 			}
 
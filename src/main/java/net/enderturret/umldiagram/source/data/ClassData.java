@@ -0,0 +1,106 @@
+package net.enderturret.umldiagram.source.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.enderturret.umldiagram.source.IDiagramFormatter;
+import net.enderturret.umldiagram.source.ISource;
+import net.enderturret.umldiagram.util.Settings;
+
+/**
+ * <p>Stores everything a UML diagram shows about a class, before it's formatted.</p>
+ * <p>
+ * Which members are included and how their types are written depend on the {@link Settings} it was extracted with.
+ * The {@link Settings#formatter() formatter} and {@link Settings#sort() sorting} are only applied by {@link #render(List, Settings)},
+ * so the same data can be rendered any number of times without going back to the class.
+ * </p>
+ * @author EnderTurret
+ * @see ISource#extract(Object, Settings)
+ */
+public final class ClassData {
+
+	private final String name;
+	private final List<FieldData> fields;
+	private final List<MethodData> constructors;
+	private final List<MethodData> methods;
+
+	public ClassData(String name, List<FieldData> fields, List<MethodData> constructors, List<MethodData> methods) {
+		this.name = name;
+		this.fields = Collections.unmodifiableList(fields);
+		this.constructors = Collections.unmodifiableList(constructors);
+		this.methods = Collections.unmodifiableList(methods);
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public List<FieldData> fields() {
+		return fields;
+	}
+
+	public List<MethodData> constructors() {
+		return constructors;
+	}
+
+	public List<MethodData> methods() {
+		return methods;
+	}
+
+	/**
+	 * Populates the lines of a UML diagram for this class, as described in {@link ISource#generate(List, Object, Settings)}.
+	 * @param lines A list to fill with lines.
+	 * @param settings The settings. Only the formatter and whether to sort are used.
+	 */
+	public void render(List<Line> lines, Settings settings) {
+		final IDiagramFormatter f = settings.formatter();
+
+		lines.add(new Line(f.formatClassName(name), name.length()));
+
+		if (!fields.isEmpty())
+			lines.add(ISource.SEPARATOR_LINE);
+
+		// Each member is formatted exactly once; the builder works out how wide it is along the way.
+		final LineBuilder line = new LineBuilder();
+
+		for (FieldData field : sorted(fields, settings)) {
+			field.appendTo(line.clear().append(' '), f);
+			lines.add(line.append(' ').toLine());
+		}
+
+		if (!constructors.isEmpty() || !methods.isEmpty())
+			lines.add(ISource.SEPARATOR_LINE);
+
+		for (MethodData ctor : sorted(constructors, settings)) {
+			ctor.appendTo(line.clear().append(' '), f);
+			lines.add(line.append(' ').toLine());
+		}
+
+		for (MethodData m : sorted(methods, settings)) {
+			m.appendTo(line.clear().append(' '), f);
+			lines.add(line.append(' ').toLine());
+		}
+	}
+
+	/**
+	 * Packs this data into a {@link MemberTable}, which takes up much less memory if it needs to be kept around.
+	 * @param symbols The symbol table to store names and types in.
+	 * @return The packed data.
+	 */
+	public MemberTable pack(SymbolTable symbols) {
+		return MemberTable.pack(this, symbols);
+	}
+
+	private static <T extends Comparable<? super T>> List<T> sorted(List<T> list, Settings settings) {
+		if (!settings.sort() || list.size() < 2) return list;
+		final List<T> ret = new ArrayList<>(list);
+		Collections.sort(ret);
+		return ret;
+	}
+
+	@Override
+	public String toString() {
+		return "ClassData[" + name + ", " + fields.size() + " fields, " + constructors.size() + " constructors, " + methods.size() + " methods]";
+	}
+}
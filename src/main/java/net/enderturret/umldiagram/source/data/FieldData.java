@@ -53,7 +53,22 @@ public final class FieldData implements Comparable<FieldData> {
 	}
 
 	public String toFormattedString(IDiagramFormatter f) {
-		return f.formatAccess(access) + " " + f.formatFieldName(name) + ": " + f.formatType(type);
+		final LineBuilder line = new LineBuilder();
+		appendTo(line, f);
+		return line.text();
+	}
+
+	/**
+	 * Appends the formatted representation of this field to the given line.
+	 * @param line The line.
+	 * @param f The formatter.
+	 */
+	public void appendTo(LineBuilder line, IDiagramFormatter f) {
+		f.appendAccess(line, access);
+		line.append(' ');
+		f.appendFieldName(line, name);
+		line.append(": ");
+		f.appendType(line, type);
 	}
 
 	@Override
@@ -0,0 +1,98 @@
+package net.enderturret.umldiagram.source.data;
+
+import net.enderturret.umldiagram.source.IDiagramFormatter;
+
+/**
+ * <p>Builds a (possibly formatted) {@link Line}, keeping track of how wide it will look as text is appended.</p>
+ * <p>
+ * Formatters append the formatted text along with the width of the text it represents, so the width is known without having to build an unformatted copy of the line.
+ * Markup that takes up no space, like HTML tags, can be appended with {@link #appendMarkup(String)}.
+ * </p>
+ * @author EnderTurret
+ * @see IDiagramFormatter#appendType(LineBuilder, String)
+ */
+public final class LineBuilder {
+
+	private final StringBuilder text = new StringBuilder(64);
+	private int width;
+
+	/**
+	 * Appends unformatted text.
+	 * @param value The text.
+	 * @return {@code this}.
+	 */
+	public LineBuilder append(String value) {
+		text.append(value);
+		width += value.length();
+		return this;
+	}
+
+	/**
+	 * Appends an unformatted character.
+	 * @param value The character.
+	 * @return {@code this}.
+	 */
+	public LineBuilder append(char value) {
+		text.append(value);
+		width++;
+		return this;
+	}
+
+	/**
+	 * Appends formatted text.
+	 * @param formatted The formatted text.
+	 * @param width How wide the text looks once formatted.
+	 * @return {@code this}.
+	 */
+	public LineBuilder append(String formatted, int width) {
+		text.append(formatted);
+		this.width += width;
+		return this;
+	}
+
+	/**
+	 * Appends text that doesn't take up any space, such as HTML tags.
+	 * @param markup The text.
+	 * @return {@code this}.
+	 */
+	public LineBuilder appendMarkup(String markup) {
+		text.append(markup);
+		return this;
+	}
+
+	/**
+	 * @return How wide the line looks so far.
+	 */
+	public int width() {
+		return width;
+	}
+
+	/**
+	 * @return The text of the line so far.
+	 */
+	public String text() {
+		return text.toString();
+	}
+
+	/**
+	 * Empties this builder, so that it can be used for another line.
+	 * @return {@code this}.
+	 */
+	public LineBuilder clear() {
+		text.setLength(0);
+		width = 0;
+		return this;
+	}
+
+	/**
+	 * @return The line so far.
+	 */
+	public Line toLine() {
+		return new Line(text.toString(), width);
+	}
+
+	@Override
+	public String toString() {
+		return text.toString();
+	}
+}
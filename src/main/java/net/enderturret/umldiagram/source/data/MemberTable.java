@@ -0,0 +1,243 @@
+package net.enderturret.umldiagram.source.data;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import net.enderturret.umldiagram.source.Access;
+
+/**
+ * <p>A compact, read-only copy of a {@link ClassData}, for keeping the members of lots of classes in memory at once.</p>
+ * <p>
+ * Every name and type is stored as a symbol from a shared {@link SymbolTable}, and the rest of each member is packed into a byte,
+ * so a whole class is just a handful of arrays no matter how many members it has.
+ * {@link FieldData} and {@link MethodData} objects are only created when they're asked for, and aren't kept.
+ * </p>
+ * <p>Member tables are immutable, and therefore thread-safe.</p>
+ * @author EnderTurret
+ * @see #pack(ClassData, SymbolTable)
+ */
+public final class MemberTable {
+
+	private static final Access[] ACCESS = Access.values();
+
+	// The flags of each member: the ordinal of its access, plus this if it's a constructor.
+	private static final int CONSTRUCTOR = 0x4;
+	private static final int ACCESS_MASK = 0x3;
+
+	private final SymbolTable symbols;
+	private final int name;
+
+	// Two symbols per field: its name and type.
+	private final int[] fields;
+	private final byte[] fieldFlags;
+
+	// Two symbols per method (constructors first): its name and return type.
+	private final int[] methods;
+	private final byte[] methodFlags;
+	private final int constructors;
+
+	// The parameters of method i are paramStart[i] (inclusive) to paramStart[i + 1] (exclusive), with two symbols each: the name (or -1) and type.
+	private final int[] paramStart;
+	private final int[] params;
+
+	private MemberTable(SymbolTable symbols, int name, int[] fields, byte[] fieldFlags, int[] methods, byte[] methodFlags, int constructors, int[] paramStart, int[] params) {
+		this.symbols = symbols;
+		this.name = name;
+		this.fields = fields;
+		this.fieldFlags = fieldFlags;
+		this.methods = methods;
+		this.methodFlags = methodFlags;
+		this.constructors = constructors;
+		this.paramStart = paramStart;
+		this.params = params;
+	}
+
+	/**
+	 * Packs the given class data.
+	 * @param data The class data.
+	 * @param symbols The symbol table to store names and types in.
+	 * @return The packed class data.
+	 */
+	public static MemberTable pack(ClassData data, SymbolTable symbols) {
+		final List<FieldData> fieldList = data.fields();
+		final int[] fields = new int[fieldList.size() * 2];
+		final byte[] fieldFlags = new byte[fieldList.size()];
+
+		for (int i = 0; i < fieldFlags.length; i++) {
+			final FieldData field = fieldList.get(i);
+			fields[i * 2] = symbols.id(field.name());
+			fields[i * 2 + 1] = symbols.id(field.type());
+			fieldFlags[i] = (byte) field.access().ordinal();
+		}
+
+		final int constructors = data.constructors().size();
+		final int count = constructors + data.methods().size();
+
+		final int[] methods = new int[count * 2];
+		final byte[] methodFlags = new byte[count];
+		final int[] paramStart = new int[count + 1];
+
+		int paramCount = 0;
+		for (int i = 0; i < count; i++)
+			paramCount += method(data, i).params().length;
+
+		final int[] params = new int[paramCount * 2];
+		int param = 0;
+
+		for (int i = 0; i < count; i++) {
+			final MethodData method = method(data, i);
+			methods[i * 2] = symbols.id(method.name());
+			methods[i * 2 + 1] = symbols.id(method.returnType());
+			methodFlags[i] = (byte) (method.access().ordinal() | (method.constructor() ? CONSTRUCTOR : 0));
+
+			paramStart[i] = param;
+			for (ParameterData p : method.params()) {
+				params[param * 2] = symbols.id(p.name());
+				params[param * 2 + 1] = symbols.id(p.type());
+				param++;
+			}
+		}
+
+		paramStart[count] = param;
+
+		return new MemberTable(symbols, symbols.id(data.name()), fields, fieldFlags, methods, methodFlags, constructors, paramStart, params);
+	}
+
+	private static MethodData method(ClassData data, int i) {
+		final int constructors = data.constructors().size();
+		return i < constructors ? data.constructors().get(i) : data.methods().get(i - constructors);
+	}
+
+	/**
+	 * @return The class name, as described in {@link ClassData#name()}.
+	 */
+	public String name() {
+		return symbols.symbol(name);
+	}
+
+	/**
+	 * @return The number of fields.
+	 */
+	public int fieldCount() {
+		return fieldFlags.length;
+	}
+
+	/**
+	 * @param i The index of a field.
+	 * @return The field's name, without creating a {@link FieldData}.
+	 */
+	public String fieldName(int i) {
+		return symbols.symbol(fields[i * 2]);
+	}
+
+	/**
+	 * @param i The index of a field.
+	 * @return The field.
+	 */
+	public FieldData field(int i) {
+		return new FieldData(symbols.symbol(fields[i * 2]), symbols.symbol(fields[i * 2 + 1]), ACCESS[fieldFlags[i] & ACCESS_MASK]);
+	}
+
+	/**
+	 * @return The number of constructors.
+	 */
+	public int constructorCount() {
+		return constructors;
+	}
+
+	/**
+	 * @param i The index of a constructor.
+	 * @return The constructor.
+	 */
+	public MethodData constructor(int i) {
+		if (i < 0 || i >= constructors) throw new IndexOutOfBoundsException("Constructor " + i + " of " + constructors);
+		return method0(i);
+	}
+
+	/**
+	 * @return The number of methods, not counting constructors.
+	 */
+	public int methodCount() {
+		return methodFlags.length - constructors;
+	}
+
+	/**
+	 * @param i The index of a method, not counting constructors.
+	 * @return The method's name, without creating a {@link MethodData}.
+	 */
+	public String methodName(int i) {
+		return symbols.symbol(methods[(constructors + i) * 2]);
+	}
+
+	/**
+	 * @param i The index of a method, not counting constructors.
+	 * @return The method.
+	 */
+	public MethodData method(int i) {
+		if (i < 0 || i >= methodCount()) throw new IndexOutOfBoundsException("Method " + i + " of " + methodCount());
+		return method0(constructors + i);
+	}
+
+	private MethodData method0(int i) {
+		final ParameterData[] params = new ParameterData[paramStart[i + 1] - paramStart[i]];
+
+		for (int j = 0; j < params.length; j++) {
+			final int param = (paramStart[i] + j) * 2;
+			params[j] = new ParameterData(symbols.symbol(this.params[param]), symbols.symbol(this.params[param + 1]));
+		}
+
+		final int flags = methodFlags[i];
+		return new MethodData(symbols.symbol(methods[i * 2]), symbols.symbol(methods[i * 2 + 1]), ACCESS[flags & ACCESS_MASK], (flags & CONSTRUCTOR) != 0, params);
+	}
+
+	/**
+	 * @return A view of the fields, which creates each {@link FieldData} as it's asked for.
+	 */
+	public List<FieldData> fields() {
+		return new View<FieldData>() {
+			@Override
+			public FieldData get(int index) { return field(index); }
+			@Override
+			public int size() { return fieldCount(); }
+		};
+	}
+
+	/**
+	 * @return A view of the constructors, which creates each {@link MethodData} as it's asked for.
+	 */
+	public List<MethodData> constructors() {
+		return new View<MethodData>() {
+			@Override
+			public MethodData get(int index) { return constructor(index); }
+			@Override
+			public int size() { return constructorCount(); }
+		};
+	}
+
+	/**
+	 * @return A view of the methods, which creates each {@link MethodData} as it's asked for.
+	 */
+	public List<MethodData> methods() {
+		return new View<MethodData>() {
+			@Override
+			public MethodData get(int index) { return method(index); }
+			@Override
+			public int size() { return methodCount(); }
+		};
+	}
+
+	/**
+	 * @return A {@link ClassData} backed by this table, which can be {@link ClassData#render(List, net.enderturret.umldiagram.util.Settings) rendered} like any other.
+	 */
+	public ClassData unpack() {
+		return new ClassData(name(), fields(), constructors(), methods());
+	}
+
+	@Override
+	public String toString() {
+		return "MemberTable[" + name() + ", " + fieldCount() + " fields, " + constructorCount() + " constructors, " + methodCount() + " methods]";
+	}
+
+	private static abstract class View<T> extends AbstractList<T> implements RandomAccess {}
+}
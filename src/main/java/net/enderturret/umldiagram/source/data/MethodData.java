@@ -69,9 +69,33 @@ public final class MethodData implements Comparable<MethodData> {
 	}
 
 	public String toFormattedString(IDiagramFormatter f) {
-		return f.formatAccess(access) + " " + f.formatMethodName(name) + "("
-				+ Arrays.stream(params).map(p -> p.toFormattedString(f)).collect(Collectors.joining(", "))
-				+ ")" + (constructor ? "" : ": " + f.formatType(returnType));
+		final LineBuilder line = new LineBuilder();
+		appendTo(line, f);
+		return line.text();
+	}
+
+	/**
+	 * Appends the formatted representation of this method to the given line.
+	 * @param line The line.
+	 * @param f The formatter.
+	 */
+	public void appendTo(LineBuilder line, IDiagramFormatter f) {
+		f.appendAccess(line, access);
+		line.append(' ');
+		f.appendMethodName(line, name);
+		line.append('(');
+
+		for (int i = 0; i < params.length; i++) {
+			if (i != 0) line.append(", ");
+			params[i].appendTo(line, f);
+		}
+
+		line.append(')');
+
+		if (!constructor) {
+			line.append(": ");
+			f.appendType(line, returnType);
+		}
 	}
 
 	@Override
@@ -62,4 +62,18 @@ public final class ParameterData implements Comparable<ParameterData> {
 		if (name == null) return f.formatType(type);
 		return f.formatParameter(name) + ": " + f.formatType(type);
 	}
+
+	/**
+	 * Appends the formatted representation of this parameter to the given line.
+	 * @param line The line.
+	 * @param f The formatter.
+	 */
+	public void appendTo(LineBuilder line, IDiagramFormatter f) {
+		if (name != null) {
+			f.appendParameter(line, name);
+			line.append(": ");
+		}
+
+		f.appendType(line, type);
+	}
 }
\ No newline at end of file
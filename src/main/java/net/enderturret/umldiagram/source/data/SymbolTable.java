@@ -0,0 +1,91 @@
+package net.enderturret.umldiagram.source.data;
+
+import java.util.Arrays;
+
+/**
+ * <p>Numbers strings, so that {@link MemberTable MemberTables} can refer to names and types with an {@code int} instead of a reference.</p>
+ * <p>
+ * Symbols are numbered from zero in the order they're first seen, and are never removed.
+ * {@code null} is always symbol {@code -1}.
+ * One table is meant to be shared by every member table that's kept around together, such as the classes of a whole jar.
+ * </p>
+ * <p>This class is thread-safe. Adding symbols locks, but turning symbols back into strings doesn't.</p>
+ * @author EnderTurret
+ */
+public final class SymbolTable {
+
+	// An open-addressed hash table of (symbol + 1), or 0 for empty slots. Only used while holding the lock.
+	private int[] table = new int[512];
+
+	// Only written while holding the lock; an id is only handed out after its string has been stored.
+	private volatile String[] symbols = new String[256];
+	private int size;
+
+	/**
+	 * @param symbol A string, or {@code null}.
+	 * @return The string's symbol, adding it to the table if it isn't there yet.
+	 */
+	public synchronized int id(String symbol) {
+		if (symbol == null) return -1;
+
+		final int mask = table.length - 1;
+		int slot = hash(symbol) & mask;
+
+		for (int id; (id = table[slot]) != 0; slot = (slot + 1) & mask)
+			if (symbols[id - 1].equals(symbol))
+				return id - 1;
+
+		String[] symbols = this.symbols;
+		if (size == symbols.length)
+			symbols = Arrays.copyOf(symbols, size * 2);
+
+		symbols[size] = symbol;
+		this.symbols = symbols;
+		table[slot] = size + 1;
+
+		// Keep the table at most three quarters full.
+		if (++size * 4 > table.length * 3)
+			rehash();
+
+		return size - 1;
+	}
+
+	private void rehash() {
+		final int[] table = new int[this.table.length * 2];
+		final int mask = table.length - 1;
+
+		for (int id = 0; id < size; id++) {
+			int slot = hash(symbols[id]) & mask;
+			while (table[slot] != 0)
+				slot = (slot + 1) & mask;
+			table[slot] = id + 1;
+		}
+
+		this.table = table;
+	}
+
+	private static int hash(String symbol) {
+		final int h = symbol.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @param id A symbol from {@link #id(String)}.
+	 * @return The symbol's string, or {@code null} if the symbol is {@code -1}.
+	 */
+	public String symbol(int id) {
+		return id == -1 ? null : symbols[id];
+	}
+
+	/**
+	 * @return The number of symbols in the table.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "SymbolTable[size=" + size() + "]";
+	}
+}
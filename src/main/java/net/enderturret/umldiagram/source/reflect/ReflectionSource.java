@@ -11,7 +11,12 @@ import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.lang.reflect.WildcardType;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -19,10 +24,12 @@ import java.util.stream.Collectors;
 import net.enderturret.umldiagram.source.Access;
 import net.enderturret.umldiagram.source.IDiagramFormatter;
 import net.enderturret.umldiagram.source.ISource;
+import net.enderturret.umldiagram.source.Relation;
 import net.enderturret.umldiagram.source.data.FieldData;
 import net.enderturret.umldiagram.source.data.MethodData;
 import net.enderturret.umldiagram.source.data.ParameterData;
 import net.enderturret.umldiagram.util.Settings;
+import net.enderturret.umldiagram.util.StringPool;
 
 /**
  * A UML diagram generator source that uses reflection.
@@ -36,6 +43,7 @@ public enum ReflectionSource implements ISource<Class<?>> {
 
 	@Override
 	public String generate(List<FieldData> fields, List<MethodData> constructors, List<MethodData> methods, Class<?> source, Settings settings) {
+		final TypeNamer namer = new TypeNamer();
 		String ctorName = simpleClassName(source);
 
 		final StringBuilder clazzName = new StringBuilder(settings.useFqn() ? source.getName() : ctorName);
@@ -50,7 +58,7 @@ public enum ReflectionSource implements ISource<Class<?>> {
 			for (int i = 0; i < types.length; i++) {
 				if (i != 0)
 					clazzName.append(", ");
-				names[i] = type(types[i], settings.showGenerics(), settings.truncateGenericClassName());
+				names[i] = namer.type(types[i], settings.showGenerics(), settings.truncateGenericClassName());
 
 				for (int j = 0; j < i; j++)
 					names[i] = names[i].replace(names[j], types[j].getName());
@@ -81,31 +89,90 @@ public enum ReflectionSource implements ISource<Class<?>> {
 			if (field.isSynthetic()) continue;
 			final Access access = Access.forModifiers(field.getModifiers());
 			if (settings.isVisible(access))
-				fields.add(new FieldData(field.getName(), type(field.getGenericType(), settings.showGenerics(), true), access));
+				fields.add(new FieldData(field.getName(), namer.type(field.getGenericType(), settings.showGenerics(), true), access));
 		}
 
 		for (Constructor ctor : source.getDeclaredConstructors()) {
 			if (ctor.isSynthetic()) continue; // Not sure if these exist, but might as well handle them anyway.
 			final Access access = Access.forModifiers(ctor.getModifiers());
 			if (settings.isVisible(access))
-				constructors.add(new MethodData(ctorName, "void", access, true, sig(ctor.getParameters(), ctor.getGenericParameterTypes(), settings.showGenerics(), isEnum, isMember)));
+				constructors.add(new MethodData(ctorName, "void", access, true, sig(namer, ctor.getParameters(), ctor.getGenericParameterTypes(), settings.showGenerics(), isEnum, isMember)));
 		}
 
 		for (Method m : source.getDeclaredMethods()) {
 			if (m.isSynthetic()) continue;
 			final Access access = Access.forModifiers(m.getModifiers());
 			if (settings.isVisible(access))
-				methods.add(new MethodData(m.getName(), type(m.getGenericReturnType(), settings.showGenerics(), true), access, false, sig(m.getParameters(), m.getGenericParameterTypes(), settings.showGenerics(), isEnum, isMember)));
+				methods.add(new MethodData(m.getName(), namer.type(m.getGenericReturnType(), settings.showGenerics(), true), access, false, sig(namer, m.getParameters(), m.getGenericParameterTypes(), settings.showGenerics(), isEnum, isMember)));
 		}
 
-		return clazzName.toString();
+		return StringPool.share(clazzName.toString());
+	}
+
+	@Override
+	public String relations(Class<?> source, Settings settings, BiConsumer<Relation, String> visitor) {
+		if (source.getSuperclass() != null)
+			visitor.accept(Relation.INHERITANCE, source.getSuperclass().getName());
+
+		// Interfaces "implementing" other interfaces are really extending them.
+		final Relation relation = source.isInterface() ? Relation.INHERITANCE : Relation.IMPLEMENTATION;
+		for (Class<?> i : source.getInterfaces())
+			visitor.accept(relation, i.getName());
+
+		for (Field field : source.getDeclaredFields()) {
+			if (field.isSynthetic() || !settings.isVisible(Access.forModifiers(field.getModifiers()))) continue;
+			associations(settings.showGenerics() ? field.getGenericType() : field.getType(), visitor);
+		}
+
+		return source.getName();
 	}
 
+	/**
+	 * Reports every class mentioned in a type, including type arguments.
+	 */
+	private static void associations(Type type, BiConsumer<Relation, String> visitor) {
+		if (type instanceof Class) {
+			Class<?> clazz = (Class<?>) type;
+			while (clazz.isArray())
+				clazz = clazz.getComponentType();
+			if (!clazz.isPrimitive())
+				visitor.accept(Relation.ASSOCIATION, clazz.getName());
+		} else if (type instanceof ParameterizedType) {
+			associations(((ParameterizedType) type).getRawType(), visitor);
+			for (Type arg : ((ParameterizedType) type).getActualTypeArguments())
+				associations(arg, visitor);
+		} else if (type instanceof GenericArrayType)
+			associations(((GenericArrayType) type).getGenericComponentType(), visitor);
+		else if (type instanceof WildcardType) {
+			for (Type bound : ((WildcardType) type).getUpperBounds())
+				if (bound != Object.class)
+					associations(bound, visitor);
+			for (Type bound : ((WildcardType) type).getLowerBounds())
+				associations(bound, visitor);
+		}
+		// Type variables don't name a class.
+	}
+
+	/**
+	 * Caches {@link #simpleClassName0(Class)}, since the same classes show up over and over again.
+	 * Using a {@link ClassValue} means the names don't keep their classes (or class loaders) alive.
+	 */
+	private static final ClassValue<String> SIMPLE_NAMES = new ClassValue<String>() {
+		@Override
+		protected String computeValue(Class<?> type) {
+			return simpleClassName0(type);
+		}
+	};
+
 	/**
 	 * @param clazz The class.
 	 * @return The class's simple name.
 	 */
 	private static String simpleClassName(Class<?> clazz) {
+		return SIMPLE_NAMES.get(clazz);
+	}
+
+	private static String simpleClassName0(Class<?> clazz) {
 		String name = clazz.getSimpleName();
 
 		if (name.isEmpty()) {
@@ -119,129 +186,158 @@ public enum ReflectionSource implements ISource<Class<?>> {
 		else if (name.contains("$"))
 			name = name.substring(name.indexOf('$') + 1);
 
-		return name;
+		return StringPool.share(name);
 	}
 
 	/**
-	 * <p>Decodes the given {@link Type} into a nicer string representation.</p>
-	 * <p>Use this method in preference to {@link Type#getTypeName()} because this one uses simple names instead of fully qualified ones, which can be very long and not UML diagram-friendly.</p>
-	 * @param type The type to decode.
-	 * @param decodeGenerics Whether to decode generic information on the type, if present.
-	 * @param truncateGenerics Whether to truncate type variables, i.e &lt;T extends List&gt; would become &lt;T&gt;.
-	 * @return A string representation of the type.
+	 * Turns {@link Type Types} into strings for a single {@link ReflectionSource#generate(List, List, List, Class, Settings) generate} call, remembering the results.
+	 * The same types tend to show up in many members of a class, so this avoids building the same strings over and over again.
 	 */
-	private static String type(Type type, boolean decodeGenerics, boolean truncateGenerics) {
-		return type(type, decodeGenerics, truncateGenerics, null);
-	}
+	private static final class TypeNamer {
+
+		// Indexed by the generics flags; see type(Type, boolean, boolean).
+		@SuppressWarnings("unchecked")
+		private final Map<Type, String>[] memo = (Map<Type, String>[]) new Map<?, ?>[4];
+
+		// The type variables whose bounds are currently being printed.
+		private final Set<TypeVariable<?>> expanding = new HashSet<>();
+
+		/**
+		 * <p>Decodes the given {@link Type} into a nicer string representation.</p>
+		 * <p>Use this method in preference to {@link Type#getTypeName()} because this one uses simple names instead of fully qualified ones, which can be very long and not UML diagram-friendly.</p>
+		 * @param type The type to decode.
+		 * @param decodeGenerics Whether to decode generic information on the type, if present.
+		 * @param truncateGenerics Whether to truncate type variables, i.e &lt;T extends List&gt; would become &lt;T&gt;.
+		 * @return A string representation of the type.
+		 */
+		String type(Type type, boolean decodeGenerics, boolean truncateGenerics) {
+			if (type instanceof Class)
+				return simpleClassName((Class<?>) type);
+
+			// Type variables being expanded change how other types are printed, so only results that don't depend on them can be reused.
+			if (!truncateGenerics && !expanding.isEmpty())
+				return type0(type, decodeGenerics, truncateGenerics);
+
+			final int idx = (decodeGenerics ? 2 : 0) | (truncateGenerics ? 1 : 0);
+			if (memo[idx] == null)
+				memo[idx] = new HashMap<>();
+
+			String ret = memo[idx].get(type);
+
+			if (ret == null) {
+				// Interned, since the same type names show up in lots of classes (the memo only covers this one).
+				ret = StringPool.share(type0(type, decodeGenerics, truncateGenerics));
+				memo[idx].put(type, ret);
+			}
 
-	/**
-	 * <p>Decodes the given {@link Type} into a nicer string representation.</p>
-	 * <p>Use this method in preference to {@link Type#getTypeName()} because this one uses simple names instead of fully qualified ones, which can be very long and not UML diagram-friendly.</p>
-	 * @param type The type to decode.
-	 * @param decodeGenerics Whether to decode generic information on the type, if present.
-	 * @param truncateGenerics Whether to truncate type variables, i.e &lt;T extends List&gt; would become &lt;T&gt;.
-	 * @param parent The parent type. This is used to help prevent NPEs.
-	 * @return A string representation of the type.
-	 */
-	private static String type(Type type, boolean decodeGenerics, boolean truncateGenerics, Type parent) {
-		if (type instanceof Class)
-			return simpleClassName((Class<?>) type);
+			return ret;
+		}
 
-		if (type instanceof ParameterizedType) {
-			final ParameterizedType genericType = (ParameterizedType) type;
-			final StringBuilder sb = new StringBuilder();
+		/**
+		 * Does the actual work for {@link #type(Type, boolean, boolean)}, without looking at the memo.
+		 */
+		private String type0(Type type, boolean decodeGenerics, boolean truncateGenerics) {
+			if (type instanceof ParameterizedType) {
+				final ParameterizedType genericType = (ParameterizedType) type;
+				final StringBuilder sb = new StringBuilder();
 
-			sb.append(type(genericType.getRawType(), decodeGenerics, truncateGenerics));
+				sb.append(type(genericType.getRawType(), decodeGenerics, truncateGenerics));
 
-			if (decodeGenerics) {
-				final Type[] args = genericType.getActualTypeArguments();
-				if (args.length > 0) { // Instance inner classes may have zero type arguments.
-					sb.append("<");
+				if (decodeGenerics) {
+					final Type[] args = genericType.getActualTypeArguments();
+					if (args.length > 0) { // Instance inner classes may have zero type arguments.
+						sb.append("<");
 
-					for (int i = 0; i < args.length; i++) {
-						if (i != 0) sb.append(", ");
-						sb.append(type(args[i], decodeGenerics, truncateGenerics, genericType));
-					}
+						for (int i = 0; i < args.length; i++) {
+							if (i != 0) sb.append(", ");
+							sb.append(type(args[i], decodeGenerics, truncateGenerics));
+						}
 
-					sb.append(">");
+						sb.append(">");
+					}
 				}
+
+				return sb.toString();
 			}
 
-			return sb.toString();
-		}
+			if (type instanceof WildcardType) {
+				final WildcardType wildType = (WildcardType) type;
+				final StringBuilder sb = new StringBuilder();
 
-		if (type instanceof WildcardType) {
-			final WildcardType wildType = (WildcardType) type;
-			final StringBuilder sb = new StringBuilder();
+				final Type[] bounds;
 
-			final Type[] bounds;
+				if (wildType.getLowerBounds().length > 0) {
+					sb.append("? super ");
+					bounds = wildType.getLowerBounds();
+				}
+				else if (wildType.getUpperBounds().length > 0 && !wildType.getUpperBounds()[0].equals(Object.class)) {
+					sb.append("? extends ");
+					bounds = wildType.getUpperBounds();
+				}
+				else {
+					sb.append("?");
+					bounds = new Type[0];
+				}
 
-			if (wildType.getLowerBounds().length > 0) {
-				sb.append("? super ");
-				bounds = wildType.getLowerBounds();
-			}
-			else if (wildType.getUpperBounds().length > 0 && !wildType.getUpperBounds()[0].equals(Object.class)) {
-				sb.append("? extends ");
-				bounds = wildType.getUpperBounds();
-			}
-			else {
-				sb.append("?");
-				bounds = new Type[0];
-			}
+				for (int i = 0; i < bounds.length; i++) {
+					if (i != 0)
+						sb.append(" & ");
+					sb.append(type(bounds[i], decodeGenerics, truncateGenerics));
+				}
 
-			for (int i = 0; i < bounds.length; i++) {
-				if (i != 0)
-					sb.append(" & ");
-				sb.append(type(bounds[i], decodeGenerics, truncateGenerics, wildType));
+				return sb.toString();
 			}
 
-			return sb.toString();
-		}
-
-		if (type instanceof GenericArrayType)
-			return type(((GenericArrayType) type).getGenericComponentType(), decodeGenerics, truncateGenerics, type) + "[]";
+			if (type instanceof GenericArrayType)
+				return type(((GenericArrayType) type).getGenericComponentType(), decodeGenerics, truncateGenerics) + "[]";
 
-		if (type instanceof TypeVariable) {
-			final TypeVariable<?> tv = (TypeVariable<?>) type;
-			final StringBuilder sb = new StringBuilder(tv.getName());
+			if (type instanceof TypeVariable) {
+				final TypeVariable<?> tv = (TypeVariable<?>) type;
+				final StringBuilder sb = new StringBuilder(tv.getName());
 
-			if (!truncateGenerics) {
-				final Type[] args = tv.getBounds();
+				if (!truncateGenerics) {
+					final Type[] args = tv.getBounds();
 
-				// No need for <T extends Object>.
-				if (args.length == 1 && args[0] == Object.class)
-					return sb.toString();
+					// No need for <T extends Object>.
+					if (args.length == 1 && args[0] == Object.class)
+						return sb.toString();
 
-				// Hack to prevent StackOverflowErrors when trying to build "<E extends Enum<E extends Enum<...>>".
-				// This can also happen with "<K extends Comparable<K extends Comparable<...>>".
-				if (args.length == 1 && args[0] == parent)
-					return sb.toString();
+					// Prevents StackOverflowErrors when trying to build "<E extends Enum<E extends Enum<...>>".
+					// This can also happen with "<K extends Comparable<K extends Comparable<...>>".
+					if (!expanding.add(tv))
+						return sb.toString();
 
-				sb.append(" extends ");
+					try {
+						sb.append(" extends ");
 
-				for (int i = 0; i < args.length; i++) {
-					if (i != 0) sb.append(", ");
-					sb.append(type(args[i], decodeGenerics, truncateGenerics, tv));
+						for (int i = 0; i < args.length; i++) {
+							if (i != 0) sb.append(", ");
+							sb.append(type(args[i], decodeGenerics, truncateGenerics));
+						}
+					} finally {
+						expanding.remove(tv);
+					}
 				}
+
+				return sb.toString();
 			}
 
-			return sb.toString();
+			return type == null ? "null" : type.getTypeName();
 		}
-
-		return type == null ? "null" : type.getTypeName();
 	}
 
 	/**
 	 * <p>Decodes the given parameters into a {@link ParameterData} array.</p>
 	 * <p>If parameter names are available, they are added to the returned data, otherwise only types will be used.</p>
+	 * @param namer The type namer to use.
 	 * @param params The parameters of the method or constructor.
 	 * @param genericParams The generic parameters of the method or constructor.
-	 * @param decodeGenerics Whether to decode generics. See {@link #type(Type, boolean, boolean)}.
+	 * @param decodeGenerics Whether to decode generics. See {@link TypeNamer#type(Type, boolean, boolean)}.
 	 * @param isEnum {@code true} if the class containing the method or constructor is an {@link Enum}.
 	 * @param isMember {@code true} if the class containing the method or constructor is an inner class.
 	 * @return A string representation of the given method or constructor signature.
 	 */
-	private static ParameterData[] sig(Parameter[] params, Type[] genericParams, boolean decodeGenerics, boolean isEnum, boolean isMember) {
+	private static ParameterData[] sig(TypeNamer namer, Parameter[] params, Type[] genericParams, boolean decodeGenerics, boolean isEnum, boolean isMember) {
 		final ParameterData[] ret = new ParameterData[params.length];
 		boolean hasGenericParams = genericParams != null && genericParams.length > 0;
 
@@ -279,8 +375,8 @@ public enum ReflectionSource implements ISource<Class<?>> {
 			} else
 				gParam = null;
 
-			final String name = param.isNamePresent() ? param.getName() : null;
-			final String type = type(gParam != null ? gParam : param.getParameterizedType(), decodeGenerics, true);
+			final String name = param.isNamePresent() ? StringPool.share(param.getName()) : null;
+			final String type = namer.type(gParam != null ? gParam : param.getParameterizedType(), decodeGenerics, true);
 
 			ret[i] = new ParameterData(name, type);
 		}
@@ -0,0 +1,388 @@
+package net.enderturret.umldiagram.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import net.enderturret.umldiagram.source.ISource;
+import net.enderturret.umldiagram.source.data.Line;
+
+/**
+ * <p>A persistent cache of generated diagram lines, stored as one file per diagram in a directory.</p>
+ * <p>
+ * Entries are keyed by a hash of the class bytes, the {@link Settings#diagramFingerprint() diagram fingerprint} and a version string, so changing any of them is simply a miss.
+ * This makes rerunning over a mostly unchanged set of classes very cheap, since the class files don't have to be parsed at all.
+ * </p>
+ * <p>
+ * Entries are written to a temporary file first and then moved into place, so readers (including other processes) never see half-written entries.
+ * Once the entries grow past the maximum size, the least recently used ones are deleted until they're back under 90% of it.
+ * The size is tracked approximately, since other processes may be writing to the same directory.
+ * </p>
+ * <p>
+ * Only files named like entries ({@code ab/abcd...ef.diagram}, with a 64 digit hash) are ever counted or deleted.
+ * The cache also keeps a {@value #MARKER} file in its directory, and refuses to use a directory that already has other things in it,
+ * so that pointing {@code --cache} at the wrong directory can't cause any damage.
+ * </p>
+ * <p>This class is thread-safe.</p>
+ * @author EnderTurret
+ */
+public final class DiskCache {
+
+	private static final int MAGIC = 0x554D4C44; // UMLD
+	private static final int FORMAT = 1;
+	private static final String EXTENSION = ".diagram";
+	private static final String MARKER = "umldiagram-cache";
+
+	/**
+	 * Included in every key. Bump this whenever a change to the generator changes what diagrams look like,
+	 * so that builds without a proper version (which all say "dev") don't keep using diagrams from older code.
+	 */
+	public static final int GENERATOR = 1;
+
+	private static final Pattern SHARD = Pattern.compile("[0-9a-f]{2}");
+	private static final Pattern ENTRY = Pattern.compile("[0-9a-f]{64}" + Pattern.quote(EXTENSION));
+
+	private final Path dir;
+	private final long maxBytes;
+	private final byte[] salt;
+
+	private final AtomicLong size = new AtomicLong();
+	private final AtomicBoolean evicting = new AtomicBoolean();
+	private final AtomicBoolean warned = new AtomicBoolean();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Opens (or creates) a cache in the given directory.
+	 * @param dir The directory to store entries in.
+	 * @param maxBytes The maximum total size of the entries, in bytes.
+	 * @param version Included in every key (along with {@link #GENERATOR}), so that entries written by a different version of the generator are never used.
+	 * @throws IOException If the directory could not be created or scanned, or it has things in it but isn't a cache.
+	 */
+	public DiskCache(Path dir, long maxBytes, String version) throws IOException {
+		if (maxBytes < 1) throw new IllegalArgumentException("Cache size must be positive, got " + maxBytes);
+		this.dir = Files.createDirectories(dir);
+		this.maxBytes = maxBytes;
+		salt = (FORMAT + ":" + GENERATOR + ":" + version + ":").getBytes(StandardCharsets.UTF_8);
+
+		final Path marker = dir.resolve(MARKER);
+		if (!Files.isRegularFile(marker)) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				if (stream.iterator().hasNext())
+					throw new IOException("The directory " + dir + " isn't empty, and isn't a diagram cache (it has no " + MARKER + " file). Use an empty or new directory instead.");
+			}
+
+			Util.writeAtomically(marker, ("UMLDiagram cache, format " + FORMAT + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+
+		long total = 0;
+		for (Entry entry : entries())
+			total += entry.size;
+		size.set(total);
+	}
+
+	/**
+	 * Computes the key for a class.
+	 * @param code The bytecode of the class.
+	 * @param fingerprint The {@link Settings#diagramFingerprint() diagram fingerprint} of the settings the diagram is generated with.
+	 * @return The key.
+	 */
+	public String key(byte[] code, Settings.Fingerprint fingerprint) {
+		final MessageDigest digest = Util.sha256();
+		digest.update(salt);
+		digest.update(fingerprint.toString().getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+
+		return Util.hex(digest.digest(code));
+	}
+
+	/**
+	 * Hashes the jar or class directory the given class was loaded from.
+	 * This is meant to be used as the version for builds that don't have a real one, so that rebuilding the generator never reuses stale entries.
+	 * @param clazz A class of the generator.
+	 * @return The hash, or {@code "unknown"} if where the class came from can't be read.
+	 */
+	public static String checksum(Class<?> clazz) {
+		final MessageDigest digest = Util.sha256();
+
+		try {
+			final Path source = Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI());
+
+			if (Files.isDirectory(source))
+				try (Stream<Path> stream = Files.walk(source)) {
+					for (Path file : (Iterable<Path>) stream.filter(p -> p.toString().endsWith(".class")).sorted()::iterator) {
+						digest.update(source.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+						digest.update(Files.readAllBytes(file));
+					}
+				}
+			else
+				digest.update(Files.readAllBytes(source));
+		} catch (IOException | URISyntaxException | RuntimeException e) {
+			return "unknown";
+		}
+
+		return Util.hex(digest.digest());
+	}
+
+	private Path path(String key) {
+		return dir.resolve(key.substring(0, 2)).resolve(key + EXTENSION);
+	}
+
+	/**
+	 * Looks up the lines of a diagram.
+	 * Unreadable or corrupt entries are deleted and treated as missing.
+	 * @param key The key, from {@link #key(byte[], Settings.Fingerprint)}.
+	 * @return The lines, in the same form as {@link ISource#generate(List, Object, Settings)} produces them, or {@code null} if there is no such entry.
+	 */
+	public List<Line> get(String key) {
+		final Path path = path(key);
+		final byte[] data;
+
+		try {
+			data = Files.readAllBytes(path);
+		} catch (NoSuchFileException e) {
+			misses.increment();
+			return null;
+		} catch (IOException e) {
+			warn("read", e);
+			misses.increment();
+			return null;
+		}
+
+		final List<Line> lines;
+
+		try {
+			lines = decode(data);
+		} catch (IOException e) {
+			delete(path);
+			misses.increment();
+			return null;
+		}
+
+		// Keep track of when entries were last used, for eviction.
+		try {
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// Someone evicted it in the meantime; that's fine.
+		}
+
+		hits.increment();
+		return lines;
+	}
+
+	/**
+	 * Stores the lines of a diagram.
+	 * Failures are reported once and otherwise ignored, since the cache is only an optimization.
+	 * @param key The key, from {@link #key(byte[], Settings.Fingerprint)}.
+	 * @param lines The lines.
+	 */
+	public void put(String key, List<Line> lines) {
+		final Path path = path(key);
+		final byte[] data = encode(lines);
+
+		try {
+			Files.createDirectories(path.getParent());
+			Util.writeAtomically(path, data);
+		} catch (IOException e) {
+			warn("write", e);
+			return;
+		}
+
+		if (size.addAndGet(data.length) > maxBytes)
+			evict();
+	}
+
+	private void evict() {
+		// Only one thread needs to do this, the others can keep going.
+		if (!evicting.compareAndSet(false, true)) return;
+
+		try {
+			final List<Entry> entries = entries();
+			entries.sort((a, b) -> Long.compare(a.lastUsed, b.lastUsed));
+
+			long total = 0;
+			for (Entry entry : entries)
+				total += entry.size;
+
+			final long target = maxBytes / 10 * 9;
+
+			for (int i = 0; i < entries.size() && total > target; i++) {
+				delete(entries.get(i).path);
+				total -= entries.get(i).size;
+			}
+
+			size.set(total);
+		} catch (IOException e) {
+			warn("evict", e);
+		} finally {
+			evicting.set(false);
+		}
+	}
+
+	/**
+	 * Lists the entries, ignoring anything in the directory that isn't named like one.
+	 */
+	private List<Entry> entries() throws IOException {
+		final List<Entry> ret = new ArrayList<>();
+
+		try (DirectoryStream<Path> shards = Files.newDirectoryStream(dir, p -> SHARD.matcher(p.getFileName().toString()).matches())) {
+			for (Path shard : shards) {
+				if (!Files.isDirectory(shard, LinkOption.NOFOLLOW_LINKS)) continue;
+				final String prefix = shard.getFileName().toString();
+
+				try (DirectoryStream<Path> files = Files.newDirectoryStream(shard)) {
+					for (Path file : files) {
+						final String name = file.getFileName().toString();
+						if (!name.startsWith(prefix) || !ENTRY.matcher(name).matches()) continue;
+
+						try {
+							final BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+							if (attrs.isRegularFile())
+								ret.add(new Entry(file, attrs.size(), attrs.lastModifiedTime().toMillis()));
+						} catch (IOException e) {
+							// Probably deleted by another thread or process.
+						}
+					}
+				} catch (NoSuchFileException e) {
+					// Same here.
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private static byte[] encode(List<Line> lines) {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream(64 * lines.size());
+
+		try (DataOutputStream out = new DataOutputStream(baos)) {
+			out.writeInt(MAGIC);
+			out.writeInt(lines.size());
+
+			for (Line line : lines) {
+				if (line == ISource.SEPARATOR_LINE) { // == is okay here.
+					out.writeInt(-1);
+					continue;
+				}
+
+				final byte[] text = line.text().getBytes(StandardCharsets.UTF_8);
+				out.writeInt(line.width());
+				out.writeInt(text.length);
+				out.write(text);
+			}
+		} catch (IOException e) { // ByteArrayOutputStream doesn't throw these.
+			throw new IllegalStateException(e);
+		}
+
+		return baos.toByteArray();
+	}
+
+	private static List<Line> decode(byte[] data) throws IOException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a cached diagram");
+
+		final int count = in.readInt();
+		if (count < 0 || count > data.length)
+			throw new IOException("Invalid line count " + count);
+
+		final List<Line> lines = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			final int width = in.readInt();
+
+			if (width == -1) {
+				lines.add(ISource.SEPARATOR_LINE);
+				continue;
+			}
+
+			final int length = in.readInt();
+			if (length < 0 || length > in.available())
+				throw new IOException("Invalid line length " + length);
+
+			final byte[] text = new byte[length];
+			in.readFully(text);
+			lines.add(new Line(new String(text, StandardCharsets.UTF_8), width));
+		}
+
+		if (in.available() != 0)
+			throw new IOException("Trailing data after " + count + " lines");
+
+		return lines;
+	}
+
+	private static void delete(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			// Nothing else we can do.
+		}
+	}
+
+	private void warn(String what, IOException e) {
+		if (warned.compareAndSet(false, true)) {
+			System.err.println("Failed to " + what + " diagram cache in " + dir + " (further errors will not be reported):");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return The approximate total size of the entries, in bytes.
+	 */
+	public long size() {
+		return size.get();
+	}
+
+	/**
+	 * @return The number of lookups that found an entry.
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of lookups that didn't find an entry.
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "DiskCache[dir=" + dir + ", size=" + size() + ", hits=" + hits() + ", misses=" + misses() + "]";
+	}
+
+	private static final class Entry {
+
+		private final Path path;
+		private final long size;
+		private final long lastUsed;
+
+		Entry(Path path, long size, long lastUsed) {
+			this.path = path;
+			this.size = size;
+			this.lastUsed = lastUsed;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package net.enderturret.umldiagram.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * <p>A thread-safe, size-bounded cache that evicts the least recently used entries first.</p>
+ * <p>
+ * The cache is split into a number of independently locked segments, chosen by key hash, so that threads rarely wait on each other.
+ * Each segment evicts on its own, so the eviction order is only approximately LRU across the whole cache.
+ * </p>
+ * @author EnderTurret
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+public final class LruCache<K, V> {
+
+	private final Segment<K, V>[] segments;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param maxSize The maximum number of entries to keep.
+	 * @param concurrency Roughly how many threads are expected to use the cache at once.
+	 */
+	@SuppressWarnings("unchecked")
+	public LruCache(int maxSize, int concurrency) {
+		if (maxSize < 1) throw new IllegalArgumentException("Cache must be able to hold at least one entry, got " + maxSize);
+
+		int count = 1;
+		while (count < concurrency && count < maxSize)
+			count <<= 1;
+
+		segments = (Segment<K, V>[]) new Segment<?, ?>[count];
+		for (int i = 0; i < count; i++)
+			segments[i] = new Segment<>(Math.max(1, maxSize / count));
+	}
+
+	private Segment<K, V> segment(Object key) {
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		return segments[h & (segments.length - 1)];
+	}
+
+	/**
+	 * Returns the value for the given key, computing and caching it if it's not present.
+	 * The value is computed outside of any lock, so it may occasionally be computed more than once for the same key.
+	 * @param key The key.
+	 * @param function Computes the value if it isn't cached. Must not return {@code null}.
+	 * @return The value.
+	 */
+	public V get(K key, Function<? super K, ? extends V> function) {
+		final Segment<K, V> segment = segment(key);
+
+		V value;
+		synchronized (segment) {
+			value = segment.get(key);
+		}
+
+		if (value != null) {
+			hits.increment();
+			return value;
+		}
+
+		misses.increment();
+		value = function.apply(key);
+
+		synchronized (segment) {
+			segment.put(key, value);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Removes every entry from the cache and resets the statistics.
+	 */
+	public void clear() {
+		for (Segment<K, V> segment : segments)
+			synchronized (segment) {
+				segment.clear();
+			}
+
+		hits.reset();
+		misses.reset();
+	}
+
+	/**
+	 * @return The number of entries in the cache.
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment : segments)
+			synchronized (segment) {
+				size += segment.size();
+			}
+		return size;
+	}
+
+	/**
+	 * @return The number of lookups that found a cached value.
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of lookups that had to compute a value.
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "LruCache[size=" + size() + ", hits=" + hits() + ", misses=" + misses() + "]";
+	}
+
+	private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int maxSize;
+
+		Segment(int maxSize) {
+			super(16, 0.75F, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > maxSize;
+		}
+	}
+}
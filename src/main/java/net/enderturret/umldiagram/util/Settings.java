@@ -5,8 +5,11 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 
+import net.enderturret.umldiagram.ClassHierarchy;
 import net.enderturret.umldiagram.source.Access;
 import net.enderturret.umldiagram.source.IDiagramFormatter;
+import net.enderturret.umldiagram.source.ISource;
+import net.enderturret.umldiagram.source.asm.BytecodeSource;
 
 /**
  * An assortment of settings to configure what exactly should be in a generated UML diagram and how it should look.
@@ -22,10 +25,36 @@ public final class Settings {
 	private boolean withSuper = false;
 	private boolean includeObject = false;
 	private boolean noGui = false;
+	private int threads = Runtime.getRuntime().availableProcessors();
 	private IDiagramFormatter formatter = IDiagramFormatter.NO_FORMATTING;
+	private DiskCache cache = null;
+	private ClassHierarchy hierarchy = null;
+	// null means BytecodeSource, which is only looked up when it's needed so that runs without class files never load ASM.
+	private ISource<byte[]> bytecodeSource = null;
 
 	public Settings() {}
 
+	/**
+	 * @return A copy of these settings, which can be changed without affecting these ones.
+	 */
+	public Settings copy() {
+		final Settings ret = new Settings();
+		ret.useFqn = useFqn;
+		ret.visibility = EnumSet.copyOf(visibility);
+		ret.showGenerics = showGenerics;
+		ret.truncateGenericClassName = truncateGenericClassName;
+		ret.sort = sort;
+		ret.withSuper = withSuper;
+		ret.includeObject = includeObject;
+		ret.noGui = noGui;
+		ret.threads = threads;
+		ret.formatter = formatter;
+		ret.cache = cache;
+		ret.hierarchy = hierarchy;
+		ret.bytecodeSource = bytecodeSource;
+		return ret;
+	}
+
 	/**
 	 * @param value Whether to use the fully qualified name of the class for the diagram header.
 	 * @return {@code this}.
@@ -132,6 +161,16 @@ public final class Settings {
 		return this;
 	}
 
+	/**
+	 * @param value The number of threads to use when generating many diagrams at once.
+	 * @return {@code this}.
+	 */
+	public Settings threads(int value) {
+		if (value < 1) throw new IllegalArgumentException("Must use at least one thread, got " + value);
+		threads = value;
+		return this;
+	}
+
 	/**
 	 * @param value The formatter to use for formatting parts of the diagram.
 	 * @return {@code this}.
@@ -141,6 +180,33 @@ public final class Settings {
 		return this;
 	}
 
+	/**
+	 * @param value The cache to look up and store diagrams generated from bytecode in, or {@code null} to not use one.
+	 * @return {@code this}.
+	 */
+	public Settings cache(DiskCache value) {
+		cache = value;
+		return this;
+	}
+
+	/**
+	 * @param value Where to find the superclasses of classes generated from bytecode when {@link #withSuper(boolean)} is set, or {@code null} to not look for them.
+	 * @return {@code this}.
+	 */
+	public Settings hierarchy(ClassHierarchy value) {
+		hierarchy = value;
+		return this;
+	}
+
+	/**
+	 * @param value The source to read class bytecode with, such as {@link BytecodeSource} or the faster {@link net.enderturret.umldiagram.source.asm.ClassFileSource ClassFileSource}.
+	 * @return {@code this}.
+	 */
+	public Settings bytecodeSource(ISource<byte[]> value) {
+		bytecodeSource = value;
+		return this;
+	}
+
 	public boolean useFqn() {
 		return useFqn;
 	}
@@ -173,7 +239,93 @@ public final class Settings {
 		return noGui;
 	}
 
+	public int threads() {
+		return threads;
+	}
+
 	public IDiagramFormatter formatter() {
 		return formatter;
 	}
+
+	public DiskCache cache() {
+		return cache;
+	}
+
+	public ClassHierarchy hierarchy() {
+		return hierarchy;
+	}
+
+	public ISource<byte[]> bytecodeSource() {
+		return bytecodeSource != null ? bytecodeSource : BytecodeSource.INSTANCE;
+	}
+
+	/**
+	 * @return An immutable snapshot of every setting that affects what a generated diagram looks like.
+	 */
+	public Fingerprint fingerprint() {
+		return fingerprint(true);
+	}
+
+	/**
+	 * @return Same as {@link #fingerprint()}, but without {@link #withSuper()} and {@link #includeObject()}.
+	 * Those only decide which diagrams are chained together, so this is the key for caching the diagram of a single class.
+	 */
+	public Fingerprint diagramFingerprint() {
+		return fingerprint(false);
+	}
+
+	private Fingerprint fingerprint(boolean chain) {
+		int visibility = 0;
+		for (Access access : this.visibility)
+			visibility |= 1 << access.ordinal();
+
+		final int flags = (useFqn ? 1 : 0)
+				| (showGenerics ? 2 : 0)
+				| (truncateGenericClassName ? 4 : 0)
+				| (sort ? 8 : 0)
+				| (chain && withSuper ? 16 : 0)
+				| (chain && includeObject ? 32 : 0);
+
+		return new Fingerprint(flags, visibility, formatter);
+	}
+
+	/**
+	 * <p>An immutable snapshot of the {@link Settings} that affect the output of the generator, suitable for use as a cache key.</p>
+	 * <p>Settings that don't change the diagrams themselves, like {@link Settings#noGui(boolean)}, {@link Settings#threads(int)}, {@link Settings#cache(DiskCache)}, {@link Settings#hierarchy(ClassHierarchy)} and {@link Settings#bytecodeSource(ISource)}, are not included.</p>
+	 * @author EnderTurret
+	 */
+	public static final class Fingerprint {
+
+		private final int flags;
+		private final int visibility;
+		private final IDiagramFormatter formatter;
+
+		private Fingerprint(int flags, int visibility, IDiagramFormatter formatter) {
+			this.flags = flags;
+			this.visibility = visibility;
+			this.formatter = formatter;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof Fingerprint)) return false;
+			final Fingerprint o = (Fingerprint) obj;
+			// Formatters are compared by identity, since they're usually singletons.
+			return flags == o.flags && visibility == o.visibility && formatter == o.formatter;
+		}
+
+		@Override
+		public int hashCode() {
+			return (flags * 31 + visibility) * 31 + System.identityHashCode(formatter);
+		}
+
+		/**
+		 * @return A string describing these settings. This is stable between runs, as long as the same formatter classes are used.
+		 */
+		@Override
+		public String toString() {
+			return "flags=" + flags + ",visibility=" + visibility + ",formatter=" + formatter.getClass().getName();
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,146 @@
+package net.enderturret.umldiagram.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A thread-safe pool of canonical strings, like {@link String#intern()} but without going through the JVM's string table.</p>
+ * <p>
+ * Diagrams are full of the same type and member names ({@code String}, {@code int}, {@code List<E>}, {@code toString} and so on),
+ * and when lots of diagrams are kept around (by the server, the GUI or the superclass and reflection caches), the copies take up most of the memory.
+ * While a pool is {@link #open(int) open}, the bytecode and reflection sources pass freshly built names through it with {@link #share(String)},
+ * so every diagram refers to the same copy instead.
+ * Once it's {@link #close() closed}, names are left alone again, and the pool lets go of all of them.
+ * </p>
+ * <p>Once the pool is full it stops growing, and new strings are returned as-is; pooling is only ever an optimization.</p>
+ * @author EnderTurret
+ */
+public final class StringPool implements AutoCloseable {
+
+	private static volatile StringPool open;
+
+	// Java 9+ stores strings with only Latin-1 characters in one byte per character.
+	private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version", "").startsWith("1.");
+
+	private final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>();
+	private final int maxSize;
+
+	private final LongAdder duplicates = new LongAdder();
+	private final LongAdder savedBytes = new LongAdder();
+
+	/**
+	 * @param maxSize The maximum number of distinct strings to keep.
+	 */
+	public StringPool(int maxSize) {
+		if (maxSize < 1) throw new IllegalArgumentException("Pool must be able to hold at least one string, got " + maxSize);
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Creates a pool for the sources to share names through, until it's {@link #close() closed}.
+	 * @param maxSize The maximum number of distinct strings to keep.
+	 * @return The pool.
+	 * @throws IllegalStateException If another pool is already open.
+	 */
+	public static synchronized StringPool open(int maxSize) {
+		if (open != null) throw new IllegalStateException("A string pool is already open");
+		return open = new StringPool(maxSize);
+	}
+
+	/**
+	 * @param str A freshly built name, or {@code null}.
+	 * @return The canonical copy of it from the {@link #open(int) open} pool, or the string itself if there isn't one.
+	 */
+	public static String share(String str) {
+		final StringPool pool = open;
+		return pool != null ? pool.intern(str) : str;
+	}
+
+	/**
+	 * Returns the canonical copy of the given string, adding it to the pool if there isn't one yet.
+	 * @param str The string, or {@code null}.
+	 * @return A string equal to {@code str}, or {@code null} if it was {@code null}.
+	 */
+	public String intern(String str) {
+		if (str == null) return null;
+
+		String ret = pool.get(str);
+
+		if (ret == null) {
+			if (pool.size() >= maxSize) return str;
+
+			ret = pool.putIfAbsent(str, str);
+			if (ret == null) return str;
+		}
+
+		if (ret != str) {
+			duplicates.increment();
+			savedBytes.add(sizeOf(str));
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Roughly estimates how much memory a string takes up, assuming compressed object pointers.
+	 */
+	private static long sizeOf(String str) {
+		boolean latin1 = COMPACT_STRINGS;
+		for (int i = 0; latin1 && i < str.length(); i++)
+			if (str.charAt(i) > 0xFF)
+				latin1 = false;
+
+		// The String itself, plus the array's header and contents rounded up to 8 bytes.
+		return 24 + ((16 + (long) str.length() * (latin1 ? 1 : 2) + 7) & ~7);
+	}
+
+	/**
+	 * @return The number of distinct strings in the pool.
+	 */
+	public int size() {
+		return pool.size();
+	}
+
+	/**
+	 * @return How many times a copy of a string already in the pool was replaced with the pooled one.
+	 */
+	public long duplicates() {
+		return duplicates.sum();
+	}
+
+	/**
+	 * This is an upper bound on the memory saved: it's how much the replaced copies take up,
+	 * but copies that would have been garbage collected soon anyway (like those of diagrams that are only printed) never cost much in the first place.
+	 * @return Roughly how many bytes the replaced copies would have taken up, if they had all been kept.
+	 */
+	public long savedBytes() {
+		return savedBytes.sum();
+	}
+
+	/**
+	 * Empties the pool and resets its statistics.
+	 */
+	public void clear() {
+		pool.clear();
+		duplicates.reset();
+		savedBytes.reset();
+	}
+
+	/**
+	 * Stops the sources from using this pool, if it's the {@link #open(int) open} one, and empties it.
+	 */
+	@Override
+	public void close() {
+		synchronized (StringPool.class) {
+			if (open == this)
+				open = null;
+		}
+
+		clear();
+	}
+
+	@Override
+	public String toString() {
+		return "StringPool[size=" + size() + ", duplicates=" + duplicates() + ", savedBytes=" + savedBytes() + "]";
+	}
+}
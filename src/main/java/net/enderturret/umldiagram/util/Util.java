@@ -1,8 +1,23 @@
 package net.enderturret.umldiagram.util;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * A generic utility class. When you've seen one, you've seen them all.
@@ -12,6 +27,12 @@ public final class Util {
 
 	private Util() { throw new AssertionError("No"); }
 
+	private static final int RUN_LENGTH = 256;
+
+	// Precomputed runs of the characters diagrams are padded with, so padding doesn't need to allocate anything.
+	private static final String SPACES = repeat(" ", RUN_LENGTH);
+	private static final String HORIZONTAL_LINES = repeat("─", RUN_LENGTH);
+
 	/**
 	 * Basically backported String#repeat.
 	 * @param str The string to repeat.
@@ -30,6 +51,176 @@ public final class Util {
 		return sb.toString();
 	}
 
+	/**
+	 * Appends {@code c} to {@code out} {@code count} times.
+	 * Spaces and box-drawing lines are appended in chunks from shared buffers, without allocating.
+	 * @param out Where to append to.
+	 * @param c The character to repeat.
+	 * @param count The number of times to repeat it.
+	 * @throws IOException If {@code out} throws one.
+	 */
+	public static void repeat(Appendable out, char c, int count) throws IOException {
+		if (count < 0) throw new IllegalArgumentException("Attempted to repeat '" + c + "' " + count + " times!");
+
+		final String run = c == ' ' ? SPACES : c == '─' ? HORIZONTAL_LINES : null;
+
+		if (run == null) {
+			for (int i = 0; i < count; i++)
+				out.append(c);
+			return;
+		}
+
+		while (count > 0) {
+			final int n = Math.min(count, RUN_LENGTH);
+
+			// Writer.append(CharSequence, int, int) makes a substring, but write(String, int, int) doesn't.
+			if (out instanceof Writer)
+				((Writer) out).write(run, 0, n);
+			else
+				out.append(run, 0, n);
+
+			count -= n;
+		}
+	}
+
+	/**
+	 * Basically backported InputStream#readAllBytes.
+	 * @param is The stream to read.
+	 * @param sizeHint The expected number of bytes, or a negative number if unknown.
+	 * @return Everything left in the stream.
+	 * @throws IOException If the stream could not be read.
+	 */
+	public static byte[] readAllBytes(InputStream is, int sizeHint) throws IOException {
+		byte[] buffer = new byte[sizeHint > 0 ? sizeHint : 8192];
+		int length = 0;
+		int read;
+
+		while ((read = is.read(buffer, length, buffer.length - length)) != -1) {
+			length += read;
+			if (length == buffer.length) {
+				final int next = is.read();
+				if (next == -1) break;
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				buffer[length++] = (byte) next;
+			}
+		}
+
+		return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+	}
+
+	/**
+	 * Appends {@code str} to {@code out} as a quoted JSON string.
+	 * @param out Where to append to.
+	 * @param str The string.
+	 * @throws IOException If {@code out} throws one.
+	 */
+	public static void appendJsonString(Appendable out, String str) throws IOException {
+		out.append('"');
+
+		for (int i = 0; i < str.length(); i++) {
+			final char c = str.charAt(i);
+
+			if (c == '"' || c == '\\')
+				out.append('\\').append(c);
+			else if (c < 0x20)
+				out.append(String.format("\\u%04x", (int) c));
+			else
+				out.append(c);
+		}
+
+		out.append('"');
+	}
+
+	/**
+	 * @return A new SHA-256 digest.
+	 */
+	public static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) { // Every JVM is required to have SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param bytes Some bytes, like a hash.
+	 * @return The bytes as lowercase hexadecimal, two digits per byte.
+	 */
+	public static String hex(byte[] bytes) {
+		final char[] hex = new char[bytes.length * 2];
+
+		for (int i = 0; i < bytes.length; i++) {
+			hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+			hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+		}
+
+		return new String(hex);
+	}
+
+	/**
+	 * Replaces the contents of a file, such that readers see either the old or the new contents, never a partial file.
+	 * The parent directory must already exist.
+	 * @param target The file.
+	 * @param contents Writes the new contents. The stream is buffered, and doesn't need to be closed.
+	 * @throws IOException If the file could not be written.
+	 */
+	public static void writeAtomically(Path target, StreamWriter contents) throws IOException {
+		final Path temp = tempFile(target);
+
+		try {
+			try (OutputStream os = new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)), 8192)) {
+				contents.write(os);
+			}
+
+			moveAtomically(temp, target);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Same as {@link #writeAtomically(Path, StreamWriter)}, for contents that are already in memory.
+	 * @param target The file.
+	 * @param contents The new contents.
+	 * @throws IOException If the file could not be written.
+	 */
+	public static void writeAtomically(Path target, byte[] contents) throws IOException {
+		writeAtomically(target, os -> os.write(contents));
+	}
+
+	/**
+	 * Picks a name for a temporary file next to the given one, to be created with {@link StandardOpenOption#CREATE_NEW} and then {@link #moveAtomically(Path, Path) moved} over it.
+	 * Unlike {@link Files#createTempFile(Path, String, String, java.nio.file.attribute.FileAttribute...)}, the file isn't created here,
+	 * so that it ends up with the usual permissions instead of only being readable by its owner.
+	 * @param target The file that will be replaced.
+	 * @return The temporary file's path.
+	 */
+	public static Path tempFile(Path target) {
+		return target.resolveSibling(target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+	}
+
+	/**
+	 * Replaces {@code target} with {@code source}, atomically if the file system supports it.
+	 * @param source The new file.
+	 * @param target The file to replace.
+	 * @throws IOException If the file could not be moved.
+	 */
+	public static void moveAtomically(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Writes the contents of a file, for {@link Util#writeAtomically(Path, StreamWriter)}.
+	 */
+	@FunctionalInterface
+	public interface StreamWriter {
+		void write(OutputStream os) throws IOException;
+	}
+
 	public static String getStackTrace(Throwable e) {
 		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); PrintStream ps = new PrintStream(baos)) {
 			e.printStackTrace(ps);
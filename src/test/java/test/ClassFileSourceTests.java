@@ -0,0 +1,69 @@
+package test;
+
+import net.enderturret.umldiagram.source.asm.BytecodeSource;
+import net.enderturret.umldiagram.source.asm.ClassFileSource;
+import net.enderturret.umldiagram.source.data.ClassData;
+import net.enderturret.umldiagram.util.Settings;
+
+import util.ClassFinder;
+
+/**
+ * Tests to make sure {@link ClassFileSource} extracts exactly the same data as {@link BytecodeSource}, over the same classes as {@link BulkStandardLibraryClassTests}.
+ * @author EnderTurret
+ */
+public final class ClassFileSourceTests {
+
+	private static final Settings[] SETTINGS = {
+			new Settings().setAllVisible(),
+			new Settings().setAllVisible().showGenerics(false),
+			new Settings().useFqn(true)
+	};
+
+	private static int passed = 0;
+	private static int processed = 0;
+	private static int total = 0;
+
+	public static void main(String[] args) {
+		ClassFinder.findClasses(ClassFileSourceTests::testClass);
+
+		System.out.printf("%d/%d test%s passed (%d skipped).\n", passed, processed, processed == 1 ? "" : "s", total - processed);
+	}
+
+	private static boolean testClass(String str) {
+		total++;
+
+		final byte[] code = ClassUtil.readClassBytecode(str);
+		if (code == null) return true;
+
+		processed++;
+
+		try {
+			for (Settings settings : SETTINGS)
+				if (!test(str, code, settings))
+					return true;
+
+			passed++;
+		} catch (Throwable e) {
+			System.err.println("Failed to extract class " + str + ":");
+			e.printStackTrace();
+		}
+
+		return true;
+	}
+
+	private static boolean test(String str, byte[] code, Settings settings) {
+		final ClassData expected = BytecodeSource.INSTANCE.extract(code, settings);
+		final ClassData actual = ClassFileSource.INSTANCE.extract(code, settings);
+
+		if (expected.name().equals(actual.name()) && expected.fields().equals(actual.fields())
+				&& expected.constructors().equals(actual.constructors()) && expected.methods().equals(actual.methods()))
+			return true;
+
+		System.out.printf("Test " + str + " failed (" + settings.fingerprint() + "):"
+				+ "\nASM:\n%s\n%s\n%s\n%s"
+				+ "\n\nClass file:\n%s\n%s\n%s\n%s"
+				+ "\n\n", expected.name(), expected.fields(), expected.constructors(), expected.methods(),
+				actual.name(), actual.fields(), actual.constructors(), actual.methods());
+		return false;
+	}
+}
@@ -0,0 +1,178 @@
+package test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import net.enderturret.umldiagram.input.ClassIndex;
+
+/**
+ * Tests for {@link ClassIndex}, over a jar and a directory of class files.
+ * @author EnderTurret
+ */
+public final class ClassIndexTests {
+
+	// Stored in the jar, compressed in the jar, and in the directory.
+	private static final Class<?>[] STORED = { java.util.ArrayList.class, java.util.Map.Entry.class };
+	private static final Class<?>[] DEFLATED = { java.util.HashMap.class, java.lang.String.class };
+	private static final Class<?>[] LOOSE = { java.util.LinkedList.class, java.util.Map.Entry.class, ClassIndexTests.class };
+
+	private static int passed = 0;
+	private static int total = 0;
+
+	public static void main(String[] args) throws IOException {
+		final Path dir = Files.createTempDirectory("umldiagram-index-test");
+
+		try {
+			final Path jar = dir.resolve("classes.jar");
+			final Path classes = dir.resolve("classes");
+			writeJar(jar);
+			for (Class<?> clazz : LOOSE)
+				writeClass(classes, clazz.getName(), ClassUtil.readClassBytecode(clazz));
+
+			final List<Path> roots = Arrays.asList(jar, classes);
+
+			try (ClassIndex index = ClassIndex.build(roots)) {
+				lookups("built", index);
+			}
+
+			final Path file = dir.resolve("classes.idx");
+
+			try (ClassIndex index = ClassIndex.open(roots, file)) {
+				test("saved", Files.isRegularFile(file));
+				lookups("saved", index);
+			}
+
+			try (ClassIndex index = ClassIndex.open(roots, file)) {
+				lookups("reopened", index);
+			}
+
+			// Adding a class to the directory has to be noticed on the next run.
+			writeClass(classes, "java.util.Vector", ClassUtil.readClassBytecode(java.util.Vector.class));
+			touch(classes.resolve("java").resolve("util"));
+
+			try (ClassIndex index = ClassIndex.open(roots, file)) {
+				test("stale directory rebuilt", index.size() == 7 && same(index, java.util.Vector.class));
+			}
+
+			// As does replacing the jar.
+			Files.delete(jar);
+			try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+				add(zip, java.util.TreeMap.class, ZipEntry.DEFLATED);
+			}
+			touch(jar);
+
+			try (ClassIndex index = ClassIndex.open(roots, file)) {
+				test("stale jar rebuilt", same(index, java.util.TreeMap.class) && !index.contains("java.util.HashMap"));
+			}
+
+			// A damaged index is just built again.
+			Files.write(file, Arrays.copyOf(Files.readAllBytes(file), 20));
+
+			try (ClassIndex index = ClassIndex.open(roots, file)) {
+				test("truncated index rebuilt", same(index, java.util.TreeMap.class) && same(index, java.util.Vector.class));
+			}
+		} finally {
+			delete(dir);
+		}
+
+		System.out.printf("%d/%d test%s passed.\n", passed, total, total == 1 ? "" : "s");
+	}
+
+	private static void lookups(String name, ClassIndex index) throws IOException {
+		boolean found = true;
+		for (Class<?> clazz : STORED) found &= same(index, clazz);
+		for (Class<?> clazz : DEFLATED) found &= same(index, clazz);
+		for (Class<?> clazz : LOOSE) found &= same(index, clazz);
+
+		test(name + " lookups", found);
+		test(name + " size", index.size() == 6);
+		test(name + " contains", index.contains("java.util.Map$Entry") && index.contains("java.util.LinkedList") && !index.contains("java.util.Map.Entry"));
+		test(name + " missing", !index.contains("java.util.TreeMap") && index.find("java.util.TreeMap") == null);
+
+		// Map$Entry is in both, and the jar comes first.
+		test(name + " precedence", index.find("java.util.Map$Entry").length == ClassUtil.readClassBytecode(java.util.Map.Entry.class).length + 1);
+	}
+
+	private static boolean same(ClassIndex index, Class<?> clazz) throws IOException {
+		final byte[] expected = ClassUtil.readClassBytecode(clazz);
+		final byte[] actual = index.find(clazz.getName());
+
+		// The jar's copy of Map$Entry has an extra byte, to tell it apart from the directory's.
+		return actual != null && (Arrays.equals(expected, actual) || clazz == java.util.Map.Entry.class
+				&& Arrays.equals(Arrays.copyOf(expected, expected.length + 1), actual));
+	}
+
+	private static void writeJar(Path jar) throws IOException {
+		try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+			for (Class<?> clazz : STORED)
+				add(zip, clazz, ZipEntry.STORED);
+			for (Class<?> clazz : DEFLATED)
+				add(zip, clazz, ZipEntry.DEFLATED);
+
+			// Things that aren't classes should be left out.
+			zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+			zip.write("Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+	}
+
+	private static void add(ZipOutputStream zip, Class<?> clazz, int method) throws IOException {
+		byte[] code = ClassUtil.readClassBytecode(clazz);
+		if (clazz == java.util.Map.Entry.class)
+			code = Arrays.copyOf(code, code.length + 1);
+
+		final ZipEntry entry = new ZipEntry(clazz.getName().replace('.', '/') + ".class");
+		entry.setMethod(method);
+
+		if (method == ZipEntry.STORED) {
+			final CRC32 crc = new CRC32();
+			crc.update(code);
+			entry.setSize(code.length);
+			entry.setCompressedSize(code.length);
+			entry.setCrc(crc.getValue());
+		}
+
+		zip.putNextEntry(entry);
+		zip.write(code);
+		zip.closeEntry();
+	}
+
+	private static void writeClass(Path dir, String name, byte[] code) throws IOException {
+		final Path file = dir.resolve(name.replace('.', '/') + ".class");
+		Files.createDirectories(file.getParent());
+		Files.write(file, code);
+	}
+
+	/**
+	 * Moves the modification time forward, in case the change happened within the file system's timestamp granularity.
+	 */
+	private static void touch(Path path) throws IOException {
+		Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+	}
+
+	private static void test(String name, boolean result) {
+		total++;
+
+		if (result)
+			passed++;
+		else
+			System.out.println("Test " + name + " failed!");
+	}
+
+	private static void delete(Path dir) throws IOException {
+		try (Stream<Path> stream = Files.walk(dir)) {
+			for (Path path : (Iterable<Path>) stream.sorted(Comparator.reverseOrder())::iterator)
+				Files.delete(path);
+		}
+	}
+}
@@ -30,6 +30,28 @@ public final class ClassUtil {
 		}
 	}
 
+	/**
+	 * Reads the bytecode of a class without loading it.
+	 * @param name The binary name of the class.
+	 * @return The bytecode, or {@code null} if the class file couldn't be found.
+	 */
+	static byte[] readClassBytecode(String name) {
+		try (InputStream is = ClassLoader.getSystemResourceAsStream(name.replace('.', '/') + ".class")) {
+			if (is == null) return null;
+
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[2048];
+			int written = 0;
+
+			while ((written = is.read(buffer)) != -1)
+				baos.write(buffer, 0, written);
+
+			return baos.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	static String getExpectedResult(String filename) {
 		final StringBuilder sb = new StringBuilder();
 		try (InputStream is = BulkStandardLibraryClassTests.class.getResourceAsStream("/expected_results/" + filename + ".txt");
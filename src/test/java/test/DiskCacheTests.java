@@ -0,0 +1,161 @@
+package test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import net.enderturret.umldiagram.source.ISource;
+import net.enderturret.umldiagram.source.data.Line;
+import net.enderturret.umldiagram.util.DiskCache;
+import net.enderturret.umldiagram.util.Settings;
+
+/**
+ * Tests for {@link DiskCache}.
+ * @author EnderTurret
+ */
+public final class DiskCacheTests {
+
+	private static final Settings.Fingerprint FINGERPRINT = new Settings().diagramFingerprint();
+
+	private static int passed = 0;
+	private static int total = 0;
+
+	public static void main(String[] args) throws IOException {
+		final Path dir = Files.createTempDirectory("umldiagram-cache-test");
+
+		try {
+			roundTrip(dir.resolve("round-trip"));
+			corrupt(dir.resolve("corrupt"));
+			eviction(dir.resolve("eviction"));
+			foreignDirectory(dir.resolve("foreign"));
+		} finally {
+			delete(dir);
+		}
+
+		System.out.printf("%d/%d test%s passed.\n", passed, total, total == 1 ? "" : "s");
+	}
+
+	private static void roundTrip(Path dir) throws IOException {
+		final DiskCache cache = new DiskCache(dir, 1024 * 1024, "test");
+		final List<Line> lines = Arrays.asList(new Line("Example"), ISource.SEPARATOR_LINE, new Line("+ foo(): int", 12), new Line("+ bär(): String"));
+		final String key = cache.key(new byte[] { 1, 2, 3 }, FINGERPRINT);
+
+		test("missing entry", cache.get(key) == null);
+		cache.put(key, lines);
+		test("round trip", same(lines, cache.get(key)));
+
+		// Reopening should find the same entry, and count its size.
+		final DiskCache reopened = new DiskCache(dir, 1024 * 1024, "test");
+		test("reopened", same(lines, reopened.get(key)) && reopened.size() == cache.size() && cache.size() > 0);
+
+		test("other version", !new DiskCache(dir, 1024 * 1024, "other").key(new byte[] { 1, 2, 3 }, FINGERPRINT).equals(key));
+		test("other settings", !cache.key(new byte[] { 1, 2, 3 }, new Settings().setAllVisible().diagramFingerprint()).equals(key));
+		test("superclass flags ignored", cache.key(new byte[] { 1, 2, 3 }, new Settings().withSuper(true).includeObject(true).diagramFingerprint()).equals(key));
+		test("other class", !cache.key(new byte[] { 1, 2, 4 }, FINGERPRINT).equals(key));
+	}
+
+	private static void corrupt(Path dir) throws IOException {
+		final DiskCache cache = new DiskCache(dir, 1024 * 1024, "test");
+		final String key = cache.key(new byte[] { 4, 5, 6 }, FINGERPRINT);
+		cache.put(key, Arrays.asList(new Line("Example")));
+
+		final Path entry = entry(dir, key);
+		Files.write(entry, "definitely not a diagram".getBytes(StandardCharsets.UTF_8));
+
+		test("corrupt entry missing", cache.get(key) == null);
+		test("corrupt entry deleted", !Files.exists(entry));
+	}
+
+	private static void eviction(Path dir) throws IOException {
+		final DiskCache cache = new DiskCache(dir, 10 * 1024, "test");
+		final List<Line> lines = new ArrayList<>();
+		for (int i = 0; i < 20; i++)
+			lines.add(new Line("+ someMethodWithAFairlyLongName" + i + "(): void"));
+
+		final Path notes = dir.resolve("notes.txt");
+		final Path shardNotes = dir.resolve("00").resolve("notes.txt");
+		final String[] keys = new String[100];
+
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = cache.key(new byte[] { (byte) i }, FINGERPRINT);
+			cache.put(keys[i], lines);
+
+			// Drop some files that aren't entries in after the cache has been created, which eviction has to leave alone.
+			if (i == 0) {
+				Files.write(notes, new byte[64 * 1024]);
+				Files.createDirectories(shardNotes.getParent());
+				Files.write(shardNotes, new byte[64 * 1024]);
+			}
+		}
+
+		test("evicted down to size", cache.size() <= 10 * 1024 && cache.size() == entriesSize(dir));
+		test("newest entry kept", same(lines, cache.get(keys[keys.length - 1])));
+		test("other files kept", Files.size(notes) == 64 * 1024 && Files.size(shardNotes) == 64 * 1024);
+		test("other files not counted", new DiskCache(dir, 10 * 1024, "test").size() == cache.size());
+	}
+
+	private static void foreignDirectory(Path dir) throws IOException {
+		Files.createDirectories(dir);
+		Files.write(dir.resolve("important-notes.txt"), new byte[1024]);
+
+		try {
+			new DiskCache(dir, 1, "test");
+			test("refuses non-empty directory", false);
+		} catch (IOException e) {
+			test("refuses non-empty directory", Files.exists(dir.resolve("important-notes.txt")));
+		}
+	}
+
+	private static Path entry(Path dir, String key) {
+		return dir.resolve(key.substring(0, 2)).resolve(key + ".diagram");
+	}
+
+	private static long entriesSize(Path dir) throws IOException {
+		try (Stream<Path> stream = Files.walk(dir)) {
+			return stream.filter(p -> p.toString().endsWith(".diagram")).mapToLong(p -> {
+				try {
+					return Files.size(p);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).sum();
+		}
+	}
+
+	private static boolean same(List<Line> expected, List<Line> actual) {
+		if (actual == null || expected.size() != actual.size()) return false;
+
+		for (int i = 0; i < expected.size(); i++) {
+			final Line a = expected.get(i);
+			final Line b = actual.get(i);
+
+			if (a == ISource.SEPARATOR_LINE ? b != ISource.SEPARATOR_LINE : !a.text().equals(b.text()) || a.width() != b.width())
+				return false;
+		}
+
+		return true;
+	}
+
+	private static void test(String name, boolean result) {
+		total++;
+
+		if (result)
+			passed++;
+		else
+			System.out.println("Test " + name + " failed!");
+	}
+
+	private static void delete(Path dir) throws IOException {
+		try (Stream<Path> stream = Files.walk(dir)) {
+			for (Path path : (Iterable<Path>) stream.sorted(Comparator.reverseOrder())::iterator)
+				Files.delete(path);
+		}
+	}
+}
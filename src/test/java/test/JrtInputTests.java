@@ -0,0 +1,57 @@
+package test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.enderturret.umldiagram.input.JrtInput;
+
+/**
+ * Tests for {@link JrtInput}, which behaves differently on Java 8 (no modules, so all of {@code rt.jar}) and later; run these on both.
+ * @author EnderTurret
+ */
+public final class JrtInputTests {
+
+	private static int passed = 0;
+	private static int total = 0;
+
+	public static void main(String[] args) throws IOException {
+		final boolean modular = JrtInput.hasModules();
+		test("has modules", modular == !System.getProperty("java.specification.version").startsWith("1."));
+
+		final List<String> missing = JrtInput.missing(Arrays.asList("java.base", "no.such.module"));
+		if (modular)
+			test("missing modules", missing.equals(Collections.singletonList("no.such.module")));
+		else // Module names are ignored on Java 8, so none of them are missing.
+			test("missing modules", missing.isEmpty());
+
+		final Set<String> names = new HashSet<>();
+		final boolean finished = new JrtInput(Collections.singletonList("java.base")).forEach(clazz -> {
+			names.add(clazz.name());
+			return true;
+		});
+
+		test("finished", finished);
+		test("read java.base", names.contains("java.lang.String") && names.contains("java.util.Map$Entry"));
+
+		// Java 8 reads everything in rt.jar instead.
+		test("only java.base", names.contains("java.sql.Connection") != modular);
+
+		final int[] visited = { 0 };
+		test("stops early", !new JrtInput(Collections.singletonList("java.base")).forEach(clazz -> ++visited[0] < 10) && visited[0] == 10);
+
+		System.out.printf("%d/%d test%s passed.\n", passed, total, total == 1 ? "" : "s");
+	}
+
+	private static void test(String name, boolean result) {
+		total++;
+
+		if (result)
+			passed++;
+		else
+			System.out.println("Test " + name + " failed!");
+	}
+}
@@ -0,0 +1,85 @@
+package test;
+
+import net.enderturret.umldiagram.UMLDiagrams;
+import net.enderturret.umldiagram.source.asm.BytecodeSource;
+import net.enderturret.umldiagram.source.data.ClassData;
+import net.enderturret.umldiagram.source.data.MemberTable;
+import net.enderturret.umldiagram.source.data.SymbolTable;
+import net.enderturret.umldiagram.util.Settings;
+
+import util.ClassFinder;
+
+/**
+ * Tests to make sure packing class data into a {@link MemberTable} and unpacking it again loses nothing, over the same classes as {@link BulkStandardLibraryClassTests}.
+ * @author EnderTurret
+ */
+public final class MemberTableTests {
+
+	private static final Settings[] SETTINGS = {
+			new Settings().setAllVisible(),
+			new Settings().setAllVisible().showGenerics(false),
+			new Settings().useFqn(true)
+	};
+
+	// Shared by every class, like it would be for a whole jar.
+	private static final SymbolTable SYMBOLS = new SymbolTable();
+
+	private static int passed = 0;
+	private static int processed = 0;
+	private static int total = 0;
+
+	public static void main(String[] args) {
+		ClassFinder.findClasses(MemberTableTests::testClass);
+
+		System.out.printf("%d/%d test%s passed (%d skipped).\n", passed, processed, processed == 1 ? "" : "s", total - processed);
+	}
+
+	private static boolean testClass(String str) {
+		total++;
+
+		final byte[] code = ClassUtil.readClassBytecode(str);
+		if (code == null) return true;
+
+		processed++;
+
+		try {
+			for (Settings settings : SETTINGS)
+				if (!test(str, code, settings))
+					return true;
+
+			passed++;
+		} catch (Throwable e) {
+			System.err.println("Failed to pack class " + str + ":");
+			e.printStackTrace();
+		}
+
+		return true;
+	}
+
+	private static boolean test(String str, byte[] code, Settings settings) {
+		final ClassData expected = BytecodeSource.INSTANCE.extract(code, settings);
+		final MemberTable table = MemberTable.pack(expected, SYMBOLS);
+		final ClassData actual = table.unpack();
+
+		boolean names = true;
+		for (int i = 0; i < table.fieldCount(); i++)
+			names &= table.fieldName(i).equals(expected.fields().get(i).name());
+		for (int i = 0; i < table.methodCount(); i++)
+			names &= table.methodName(i).equals(expected.methods().get(i).name());
+
+		final String expectedDiagram = UMLDiagrams.render(settings, expected).toString();
+		final String actualDiagram = UMLDiagrams.render(settings, actual).toString();
+
+		if (names && expected.name().equals(actual.name()) && expected.fields().equals(actual.fields())
+				&& expected.constructors().equals(actual.constructors()) && expected.methods().equals(actual.methods())
+				&& expectedDiagram.equals(actualDiagram))
+			return true;
+
+		System.out.printf("Test " + str + " failed (" + settings.fingerprint() + "):"
+				+ "\nOriginal:\n%s\n%s\n%s\n%s\n%s"
+				+ "\n\nUnpacked:\n%s\n%s\n%s\n%s\n%s"
+				+ "\n\n", expected.name(), expected.fields(), expected.constructors(), expected.methods(), expectedDiagram,
+				actual.name(), actual.fields(), actual.constructors(), actual.methods(), actualDiagram);
+		return false;
+	}
+}
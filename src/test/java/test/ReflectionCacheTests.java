@@ -0,0 +1,60 @@
+package test;
+
+import net.enderturret.umldiagram.UMLDiagram;
+import net.enderturret.umldiagram.UMLDiagrams;
+import net.enderturret.umldiagram.util.Settings;
+
+/**
+ * Tests for the cache behind {@link UMLDiagrams#generate(Settings, Class)}.
+ * @author EnderTurret
+ */
+public final class ReflectionCacheTests {
+
+	private static int passed = 0;
+	private static int total = 0;
+
+	public static void main(String[] args) {
+		final UMLDiagram first = UMLDiagrams.generate(new Settings(), java.util.ArrayList.class);
+
+		// Different Settings objects with the same fingerprint should share the diagram.
+		test("equal settings hit", UMLDiagrams.generate(new Settings(), java.util.ArrayList.class) == first);
+
+		// Anything that changes the fingerprint has to miss.
+		final UMLDiagram all = UMLDiagrams.generate(new Settings().setAllVisible(), java.util.ArrayList.class);
+		test("visibility misses", all != first && !all.toString().equals(first.toString()));
+
+		final UMLDiagram sorted = UMLDiagrams.generate(new Settings().sort(!new Settings().sort()), java.util.ArrayList.class);
+		test("sorting misses", sorted != first && !sorted.toString().equals(first.toString()));
+
+		final UMLDiagram fqn = UMLDiagrams.generate(new Settings().useFqn(true), java.util.ArrayList.class);
+		test("fqn misses", fqn != first && fqn.clazzName().startsWith("java.util."));
+
+		// Different classes obviously shouldn't share anything either.
+		test("other class misses", UMLDiagrams.generate(new Settings(), java.util.LinkedList.class) != first);
+
+		// Bypassing the cache should give an equal, but new, diagram.
+		final UMLDiagram uncached = UMLDiagrams.generateUncached(new Settings(), java.util.ArrayList.class);
+		test("uncached is new", uncached != first && uncached.toString().equals(first.toString()));
+
+		// Superclasses are cached too, so a chain should come out the same either way.
+		final Settings withSuper = new Settings().withSuper(true).includeObject(true);
+		test("chains match", UMLDiagrams.generate(withSuper, java.util.ArrayList.class).toString()
+				.equals(UMLDiagrams.generateUncached(withSuper, java.util.ArrayList.class).toString()));
+
+		// The diagrams of single classes are shared with and without superclasses, since only the chain differs.
+		test("chain flags ignored", withSuper.diagramFingerprint().equals(new Settings().diagramFingerprint())
+				&& !withSuper.fingerprint().equals(new Settings().fingerprint()));
+		test("chain differs", !UMLDiagrams.generate(withSuper, java.util.ArrayList.class).toString().equals(first.toString()));
+
+		System.out.printf("%d/%d test%s passed.\n", passed, total, total == 1 ? "" : "s");
+	}
+
+	private static void test(String name, boolean result) {
+		total++;
+
+		if (result)
+			passed++;
+		else
+			System.out.println("Test " + name + " failed!");
+	}
+}